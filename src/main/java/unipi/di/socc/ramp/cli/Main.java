@@ -1,12 +1,21 @@
 package unipi.di.socc.ramp.cli;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.cli.parser.PrintingUtilities;
+import unipi.di.socc.ramp.core.analyzer.AnalysisReport;
 import unipi.di.socc.ramp.core.analyzer.Analyzer;
 import unipi.di.socc.ramp.core.analyzer.Plan;
+import unipi.di.socc.ramp.core.analyzer.SearchStrategy;
 import unipi.di.socc.ramp.core.analyzer.Sequence;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
 import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.Requirement;
 
 public class Main {
 
@@ -17,6 +26,61 @@ public class Main {
             return;
         }
 
+        Analyzer analyzer = new Analyzer();
+        boolean checkFaultHandlers = false;
+        boolean printMetrics = false;
+        boolean printMetricsJson = false;
+
+        //analysis options can be given anywhere, the remaining arguments are positional
+        List<String> positionalArgs = new ArrayList<>();
+        for(String arg : args){
+            if(arg.equals("--por"))
+                analyzer.setPartialOrderReduction(true);
+            else if(arg.equals("--trail"))
+                analyzer.setTrailMode(true);
+            else if(arg.equals("--symmetry"))
+                analyzer.setSymmetryReduction(true);
+            else if(arg.equals("--persistent"))
+                analyzer.setPersistentStates(true);
+            else if(arg.equals("--parallel"))
+                analyzer.setParallelism(Runtime.getRuntime().availableProcessors());
+            else if(arg.equals("--bfs"))
+                analyzer.setSearchStrategy(SearchStrategy.BFS);
+            else if(arg.equals("--iterative-deepening"))
+                analyzer.setSearchStrategy(SearchStrategy.ITERATIVE_DEEPENING);
+            else if(arg.equals("--best-first"))
+                analyzer.setSearchStrategy(SearchStrategy.BEST_FIRST);
+            else if(arg.equals("--check-handlers"))
+                checkFaultHandlers = true;
+            else if(arg.equals("--metrics"))
+                printMetrics = true;
+            else if(arg.equals("--metrics-json"))
+                printMetricsJson = true;
+            else if(arg.startsWith("--max-time=") || arg.startsWith("--max-states=") || arg.startsWith("--max-memory=")){
+                long limit;
+                try {
+                    limit = Long.parseLong(arg.substring(arg.indexOf('=') + 1));
+                } catch (NumberFormatException e) {
+                    help("not a number: " + arg);
+                    return;
+                }
+                if(arg.startsWith("--max-time="))
+                    analyzer.getBudget().setMaxMillis(limit * 1000);
+                else if(arg.startsWith("--max-states="))
+                    analyzer.getBudget().setMaxStates(limit);
+                else
+                    analyzer.getBudget().setMaxHeapBytes(limit * 1024 * 1024);
+            }
+            else
+                positionalArgs.add(arg);
+        }
+        args = positionalArgs.toArray(new String[0]);
+
+        if(args.length == 0) {
+            help();
+            return;
+        }
+
         String appPath = args[0];;
         String globalStatePath = null;
         String toAnalizePath = null;
@@ -51,6 +115,17 @@ public class Main {
             return;
         }
 
+        //static check of the fault handlers, before the analysis
+        if(checkFaultHandlers){
+            Map<String, Map<String, List<Requirement>>> unhandledFaults = app.getUnhandledFaults();
+            for(String nodeName : unhandledFaults.keySet()){
+                for(String state : unhandledFaults.get(nodeName).keySet()){
+                    for(Requirement req : unhandledFaults.get(nodeName).get(state))
+                        System.out.println("no fault handler: node " + nodeName + ", state " + state + ", requirement " + req.getName());
+                }
+            }
+        }
+
         if(type.equals("--sequence")){
             try {
                 sequence = Parser.parseSequence(toAnalizePath);
@@ -65,18 +140,28 @@ public class Main {
             } catch (IOException e) {
                 e.printStackTrace();
                 return;
+            } catch (CyclicPlanException e) {
+                //no trace can execute the actions of a cycle
+                System.out.println("CYCLIC PARTIAL ORDER: ");
+                for(Action action : e.getCycle()){
+                    System.out.print("\t");
+                    PrintingUtilities.printAction(action);
+                    System.out.println("");
+                }
+                return;
             }
         }else{
             help();
             return;
         }
-         
-        Analyzer analyzer = new Analyzer();
 
         //we start the analysis
         if(sequence != null){
             try {
-                if(!analyzer.sequenceAnalysis(app, sequence, property))
+                boolean verdict = analyzer.sequenceAnalysis(app, sequence, property);
+                if(analyzer.getReport().isInconclusive())
+                    printInconclusive("sequence", analyzer.getReport());
+                else if(!verdict)
                     analyzer.printReport();
                 else
                     System.out.println("submitted sequence: " + property.replaceAll("--", ""));
@@ -88,7 +173,10 @@ public class Main {
 
         if(plan != null){
             try {
-                if(!analyzer.planAnalysis(app, plan, property))
+                boolean verdict = analyzer.planAnalysis(app, plan, property);
+                if(analyzer.getReport().isInconclusive())
+                    printInconclusive("plan", analyzer.getReport());
+                else if(!verdict)
                     analyzer.printReport();
                 else
                 System.out.println("submitted plan: " + property.replaceAll("--", ""));
@@ -98,11 +186,24 @@ public class Main {
                 return;
             }
         }
+
+        if(printMetrics)
+            PrintingUtilities.printMetrics(analyzer.getReport().getMetrics());
+        if(printMetricsJson)
+            System.out.println(PrintingUtilities.metricsToJson(analyzer.getReport().getMetrics()));
        
 
         
     }
 
+    //the analysis ran out of budget: what it explored
+    private static void printInconclusive(String type, AnalysisReport report) {
+        System.out.println("submitted " + type + ": inconclusive (" + report.getExhaustedLimit().toString().toLowerCase() + " budget exhausted)");
+        System.out.println("\t explored states: " + report.getMetrics().getExploredStates());
+        System.out.println("\t completed traces: " + report.getMetrics().getExploredLinearizations());
+        System.out.println("\t linearizations (estimated): " + String.format("%.0f", report.getMetrics().getEstimatedLinearizations()));
+    }
+
     public static void help(String s) {
         System.out.println("\n" + s);
         help();
@@ -116,11 +217,27 @@ public class Main {
             "[global-state.json] " + 
             "plan-or-sequence.json " + 
             "<type> " + 
-            "<property>"
+            "<property> " + 
+            "[<options>]"
         );
 
         System.out.println("\t <type> : --plan, --sequence");
         System.out.println("\t <property> : --valid, --weakly-valid");
+        System.out.println("\t <options> :");
+        System.out.println("\t\t --por : partial order reduction (plans only)");
+        System.out.println("\t\t --symmetry : analyse once the global states equal up to renaming replicas not named in the plan/sequence");
+        System.out.println("\t\t --trail : undo the changes of the global state instead of cloning it (sequential analysis only)");
+        System.out.println("\t\t --persistent : fork the global state sharing its structure instead of cloning it");
+        System.out.println("\t\t --parallel : analysis on all the available processors");
+        System.out.println("\t\t --bfs : breadth-first analysis, reporting a shortest counterexample (sequential analysis only)");
+        System.out.println("\t\t --iterative-deepening : depth-first analysis with a depth bound increased by one, reporting a shortest counterexample (sequential analysis only)");
+        System.out.println("\t\t --best-first : analysis of the configurations with most (--valid) or least (--weakly-valid) pending faults first (sequential analysis only)");
+        System.out.println("\t\t --max-time=<seconds> : stop the analysis after the given time, reporting it as inconclusive");
+        System.out.println("\t\t --max-states=<n> : stop the analysis after exploring n states, reporting it as inconclusive");
+        System.out.println("\t\t --max-memory=<MB> : stop the analysis when the used heap exceeds the given size, reporting it as inconclusive");
+        System.out.println("\t\t --metrics : print what the analysis explored and the time spent in each rule");
+        System.out.println("\t\t --metrics-json : print the metrics of --metrics as JSON");
+        System.out.println("\t\t --check-handlers : report the (state, requirement) pairs whose fault cannot be handled");
 
         System.out.print("\n\n");
     }
@@ -5,7 +5,9 @@ import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +20,7 @@ import unipi.di.socc.ramp.core.analyzer.Constraint;
 import unipi.di.socc.ramp.core.analyzer.Plan;
 import unipi.di.socc.ramp.core.analyzer.Sequence;
 import unipi.di.socc.ramp.core.analyzer.actions.*;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
 
 import unipi.di.socc.ramp.core.model.Application;
 import unipi.di.socc.ramp.core.model.GlobalState;
@@ -27,6 +30,7 @@ import unipi.di.socc.ramp.core.model.NodeCap;
 import unipi.di.socc.ramp.core.model.NodeInstance;
 import unipi.di.socc.ramp.core.model.NodeReq;
 import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RuntimeBinding;
 import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
 
 public class Parser {
@@ -45,21 +49,24 @@ public class Parser {
         Application app = new Application(appWrap.getName(), appWrap.getPiVersion());
 
         //now we inspect the wrapped application and rebuild the real application
+        //(all the names are interned, so that equal names are the same String object)
 
         //for each wrapped node
         for(NodeWrapper nodeWrap : appWrap.getNodes()){
             //all requirements of the node: requirement name -> requirement
-            Map<String, Requirement> reqsMap = nodeWrap.getRequirements();
+            Map<String, Requirement> reqsMap = new LinkedHashMap<>();
+            for(Requirement req : nodeWrap.getRequirements().values())
+                reqsMap.put(req.getName(), new Requirement(req.getName().intern(), req.getSort()));
 
             ManProtocolWrapper mpWrap = nodeWrap.getManagementProtocol();
             
             //we start building the management protocol of the node from its wrap
-            ManagementProtocol mp = new ManagementProtocol(mpWrap.getInitialState());
+            ManagementProtocol mp = new ManagementProtocol(mpWrap.getInitialState().intern());
 
             //for each wrapped node state
             for(NodeStateWrapper nodeStateWrap : mpWrap.getStates()){
                 //add the state to the protocol
-                mp.addState(nodeStateWrap.getName());
+                mp.addState(nodeStateWrap.getName().intern());
 
                 //add the needed requirements for the state
                 for(String reqName : nodeStateWrap.getRequires())
@@ -67,19 +74,19 @@ public class Parser {
                     mp.getRho().get(nodeStateWrap.getName()).add(reqsMap.get(reqName));
         
                 //add the offered capabilities
-                mp.getGamma().get(nodeStateWrap.getName()).addAll(nodeStateWrap.getOffers());
+                mp.getGamma().get(nodeStateWrap.getName()).addAll(intern(nodeStateWrap.getOffers()));
 
                 //add the fault handlers
-                mp.getPhi().get(nodeStateWrap.getName()).addAll(nodeStateWrap.getFaultHandlers());
+                mp.getPhi().get(nodeStateWrap.getName()).addAll(intern(nodeStateWrap.getFaultHandlers()));
             }
 
             //for each wrapped transition
             for(TransitionWrapper transitionWrap : mpWrap.getTransitions()){
                 //add the transition to the protocol
                 mp.addTransition(
-                    transitionWrap.getStartState(), 
-                    transitionWrap.getOperation(),
-                    transitionWrap.getTargetState()    
+                    transitionWrap.getStartState().intern(), 
+                    transitionWrap.getOperation().intern(),
+                    transitionWrap.getTargetState().intern()    
                 );
 
                 String transitionName = 
@@ -92,20 +99,20 @@ public class Parser {
                     mp.getRho().get(transitionName).add(reqsMap.get(reqName));
                 
                 //add the offered capabilities for the transition
-                mp.getGamma().get(transitionName).addAll(transitionWrap.getOffers());
+                mp.getGamma().get(transitionName).addAll(intern(transitionWrap.getOffers()));
                 
                 //add the fault handlers for the transition
-                mp.getPhi().get(transitionName).addAll(transitionWrap.getFaultHandlers());
+                mp.getPhi().get(transitionName).addAll(intern(transitionWrap.getFaultHandlers()));
             }
 
             //now the management protocol is ready
             //we build the real node 
             Node node = new Node(
-                nodeWrap.getName(), 
+                nodeWrap.getName().intern(), 
                 mp, 
-                new ArrayList<Requirement>(nodeWrap.getRequirements().values()), 
-                nodeWrap.getCapabilities(), 
-                nodeWrap.getOperations()
+                new ArrayList<Requirement>(reqsMap.values()), 
+                intern(nodeWrap.getCapabilities()), 
+                intern(nodeWrap.getOperations())
             );
 
             //add the node to the application
@@ -133,12 +140,35 @@ public class Parser {
         if(jsonGSPath == null)
             return app;
 
-        GlobalState gs = parseGlobalState(jsonGSPath);
-        for(NodeInstance instance : gs.getActiveInstances().values())
-            instance.setNode(app.getNodes().get(instance.getNodeTypeName()));
+        //the parsed global state is rebuilt with the nodes of the application and the interned names
+        GlobalState parsedGS = parseGlobalState(jsonGSPath);
+        GlobalState gs = new GlobalState(app);
 
+        for(NodeInstance instance : parsedGS.getActiveInstances().values()){
+            Node node = app.getNodes().get(instance.getNodeTypeName());
+            if(node == null)
+                throw new NodeUnknownException();
+
+            String instanceID = instance.getID().intern();
+            gs.getActiveInstances().put(instanceID, new NodeInstance(node, instance.getCurrentState().intern(), instanceID));
+            gs.getRuntimeBindings().put(instanceID, new ArrayList<>());
+        }
+
+        for(String instanceID : parsedGS.getRuntimeBindings().keySet()){
+            NodeInstance instance = gs.getActiveInstances().get(instanceID);
+            List<RuntimeBinding> instanceRuntimeBindings = 
+                gs.getRuntimeBindings().computeIfAbsent(instanceID.intern(), id -> new ArrayList<>());
+
+            for(RuntimeBinding rb : parsedGS.getRuntimeBindings().get(instanceID)){
+                //the requirement of the node, if it is one of them
+                Requirement req = rb.getReq();
+                if(instance != null && instance.getNodeType().getReqs().contains(req))
+                    req = instance.getNodeType().getReqs().get(instance.getNodeType().getReqs().indexOf(req));
+
+                instanceRuntimeBindings.add(new RuntimeBinding(req, rb.getNodeInstanceID().intern()));
+            }
+        }
 
-        gs.setApplication(app);
         app.setGlobalState(gs);
 
         return app;
@@ -154,7 +184,11 @@ public class Parser {
         return new Sequence(sequence);
     }
 
-    public static Plan parsePlan(String jsonFilePath) throws IOException{
+    public static Plan parsePlan(String jsonFilePath) 
+        throws 
+            IOException, 
+            CyclicPlanException
+    {
         //EXTRACT AND ORGANIZE DATA FROM THE JSON
         
         PlanOrSequenceWrapper planWrapper = parsePlanOrSequence(jsonFilePath);
@@ -166,57 +200,112 @@ public class Parser {
         //set of actions that compose the plan
         List<Action> planActions = parseSequence(jsonFilePath).getActions();
 
-        //partialOrder: action x -> list of actions that have to executed after x
-        Map<Action, List<Action>> partialOrder = new HashMap<>();
+        //actions are numbered in the order of the plan (equal actions get the same id)
+        List<Action> actions = new ArrayList<>();
+        Map<Action, Integer> actionIDs = new HashMap<>();
+        for(Action action : planActions){
+            if(!actionIDs.containsKey(action)){
+                actionIDs.put(action, actions.size());
+                actions.add(action);
+            }
+        }
 
-        //initialize partial order
-        for(Action action : planActions)
-            partialOrder.put(action, new ArrayList<>());
-        
-        //for each action we add the explicit order expressed by the constraints
+        //explicit order expressed by the constraints: id x -> ids of the actions to execute just after x
+        BitSet[] successors = new BitSet[actions.size()];
+        for(int id = 0; id < actions.size(); id++)
+            successors[id] = new BitSet(actions.size());
         for(Constraint constraint : constraintsList)
-            partialOrder.get(constraint.getBefore()).add(constraint.getAfter());
+            successors[actionIDs.get(constraint.getBefore())].set(actionIDs.get(constraint.getAfter()));
+
+        //topological sort of the actions (it fails on the cycles of the constraints)
+        int[] topologicalOrder = topologicalSort(actions, successors);
 
         //now we express the implicit ordering: a -> b, b -> c => a -> c
-        boolean changed = true;
-        while(changed){
-            changed = false;
-            //for each action that have "afters"
-            //eg: before = a;
-            for(Action before : partialOrder.keySet()){
-
-                //for each "after" of the current before
-                //eg: after = b
-                List<Action> toAdd = new ArrayList<>();
-                for(Action after : partialOrder.get(before)){
-                    
-                    //for the "afters" of after
-                    //eg: afterOfAfter = afters of b = c
-                    for(Action afterOfAfter : partialOrder.get(after)){
-
-                        //if afterOfAfter is not contained in the afters of before we add it
-                        //c is not contained in the afters of before (a)
-                        //we add c to the afters of a (since c is done after b which done after a)
-                        if(!partialOrder.get(before).contains(afterOfAfter)){
-                            if(!toAdd.contains(afterOfAfter))
-                                toAdd.add(afterOfAfter);
-                            changed = true;
-                        }
-                    }
-                }
-                //cant do it inside because the iterator
-                if(changed)
-                    partialOrder.get(before).addAll(toAdd);
-                
+        //in reverse topological order, the actions after x are those after its successors
+        BitSet[] afters = new BitSet[actions.size()];
+        for(int i = topologicalOrder.length - 1; i >= 0; i--){
+            int id = topologicalOrder[i];
+            afters[id] = new BitSet(actions.size());
+            for(int succID = successors[id].nextSetBit(0); succID >= 0; succID = successors[id].nextSetBit(succID + 1)){
+                afters[id].set(succID);
+                afters[id].or(afters[succID]);
             }
         }
 
+        //partialOrder: action x -> list of actions that have to executed after x (in the order of the plan)
+        Map<Action, List<Action>> partialOrder = new HashMap<>();
+        for(int id = 0; id < actions.size(); id++){
+            List<Action> after = new ArrayList<>();
+            for(int afterID = afters[id].nextSetBit(0); afterID >= 0; afterID = afters[id].nextSetBit(afterID + 1))
+                after.add(actions.get(afterID));
+            partialOrder.put(actions.get(id), after);
+        }
+
         //we finally return the plan
         return new Plan(planActions, partialOrder);
     }
 
 // ############################## SUPPORT ################################# 
 
+    private static List<String> intern(List<String> names){
+        List<String> internedNames = new ArrayList<>();
+        for(String name : names)
+            internedNames.add(name.intern());
+        return internedNames;
+    }
+
+    //Kahn's algorithm: ids of the actions, each one after those that have to be executed before it
+    private static int[] topologicalSort(List<Action> actions, BitSet[] successors) 
+        throws 
+            CyclicPlanException
+    {
+        int[] inDegree = new int[actions.size()];
+        for(int id = 0; id < actions.size(); id++){
+            for(int succID = successors[id].nextSetBit(0); succID >= 0; succID = successors[id].nextSetBit(succID + 1))
+                inDegree[succID]++;
+        }
+
+        int[] order = new int[actions.size()];
+        int sorted = 0;
+        for(int id = 0; id < actions.size(); id++){
+            if(inDegree[id] == 0)
+                order[sorted++] = id;
+        }
+        for(int i = 0; i < sorted; i++){
+            for(int succID = successors[order[i]].nextSetBit(0); succID >= 0; succID = successors[order[i]].nextSetBit(succID + 1)){
+                if(--inDegree[succID] == 0)
+                    order[sorted++] = succID;
+            }
+        }
+        if(sorted < actions.size())
+            throw new CyclicPlanException(findCycle(actions, successors, inDegree));
+
+        return order;
+    }
+
+    //the actions left by the topological sort (i.e., with inDegree > 0) all have a predecessor
+    //among them, hence going backwards from any of them eventually reaches a cycle
+    private static List<Action> findCycle(List<Action> actions, BitSet[] successors, int[] inDegree){
+        List<Integer> path = new ArrayList<>();
+        int id = 0;
+        while(inDegree[id] == 0)
+            id++;
+
+        while(!path.contains(id)){
+            path.add(id);
+            int predID = 0;
+            while(inDegree[predID] == 0 || !successors[predID].get(id))
+                predID++;
+            id = predID;
+        }
+
+        //the path goes backwards, the cycle forwards
+        List<Action> cycle = new ArrayList<>();
+        for(int i = path.size() - 1; i >= path.indexOf(id); i--)
+            cycle.add(actions.get(path.get(i)));
+        return cycle;
+    }
+
     private static List<Action> parseAction(ActionWrapper actionWrap){
         List<Action> action = new ArrayList<>();
 
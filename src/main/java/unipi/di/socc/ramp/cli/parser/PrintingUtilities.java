@@ -3,7 +3,11 @@ package unipi.di.socc.ramp.cli.parser;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
 import unipi.di.socc.ramp.cli.parser.wrappers.*;
+import unipi.di.socc.ramp.core.analyzer.AnalysisMetrics;
 import unipi.di.socc.ramp.core.analyzer.Plan;
 import unipi.di.socc.ramp.core.analyzer.Sequence;
 import unipi.di.socc.ramp.core.analyzer.actions.*;
@@ -269,4 +273,47 @@ public class PrintingUtilities {
             System.out.print("\n");
         }
     }
+
+    public static void printMetrics(AnalysisMetrics metrics) {
+        System.out.println("METRICS");
+        System.out.printf("\t" + "%-28s" + "%d" + "\n", "explored states", metrics.getExploredStates());
+        System.out.printf("\t" + "%-28s" + "%d" + "\n", "explored linearizations", metrics.getExploredLinearizations());
+        System.out.printf("\t" + "%-28s" + "%.0f" + "\n", "estimated linearizations", metrics.getEstimatedLinearizations());
+        System.out.printf("\t" + "%-28s" + "%d" + "\n", "clones", metrics.getClones());
+        System.out.printf("\t" + "%-28s" + "%d" + "\n", "cloned bytes", metrics.getClonedBytes());
+        System.out.printf("\t" + "%-28s" + "%d" + "\n", "fault branches", metrics.getFaultBranches());
+        System.out.printf("\t" + "%-28s" + "%d" + "\n", "memo hits", metrics.getMemoHits());
+        System.out.printf("\t" + "%-28s" + "%d" + "\n", "peak depth", metrics.getPeakDepth());
+
+        System.out.println("RULES");
+        for(AnalysisMetrics.Rule rule : AnalysisMetrics.Rule.values())
+            System.out.printf("\t" + "%-15s" + "%10d applications" + "%12.3f ms" + "\n", rule.getRuleName(), metrics.getRuleApplications(rule), metrics.getRuleNanos(rule) / 1e6);
+    }
+
+    /**
+     * @return the metrics as a JSON object, with a member for each metric and a "rules" object mapping
+     *   the name of each rule to its "applications" and "nanos"
+     */
+    public static String metricsToJson(AnalysisMetrics metrics) {
+        JsonObject json = new JsonObject();
+        json.addProperty("exploredStates", metrics.getExploredStates());
+        json.addProperty("exploredLinearizations", metrics.getExploredLinearizations());
+        json.addProperty("estimatedLinearizations", metrics.getEstimatedLinearizations());
+        json.addProperty("clones", metrics.getClones());
+        json.addProperty("clonedBytes", metrics.getClonedBytes());
+        json.addProperty("faultBranches", metrics.getFaultBranches());
+        json.addProperty("memoHits", metrics.getMemoHits());
+        json.addProperty("peakDepth", metrics.getPeakDepth());
+
+        JsonObject rules = new JsonObject();
+        for(AnalysisMetrics.Rule rule : AnalysisMetrics.Rule.values()){
+            JsonObject ruleJson = new JsonObject();
+            ruleJson.addProperty("applications", metrics.getRuleApplications(rule));
+            ruleJson.addProperty("nanos", metrics.getRuleNanos(rule));
+            rules.add(rule.getRuleName(), ruleJson);
+        }
+        json.add("rules", rules);
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
 }
@@ -0,0 +1,403 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.function.Function;
+
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.GlobalState;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+
+/**
+ * analysis of Analyzer exploring the configurations in the order of a search strategy other than DFS
+    * the configurations waiting to be explored are kept in an agenda (a queue for BFS, a stack for
+      ITERATIVE_DEEPENING, a priority queue for BEST_FIRST), each one with its own application (see
+      Application.fork), hence the global states are never rolled back
+    * a configuration is explored once (for ITERATIVE_DEEPENING, unless it is reached again with fewer
+      executed actions), and the analysis stops at the first counterexample (or witness) it finds
+    * the depth of a configuration is the number of actions executed to reach it (including the opEnds
+      executed again after their fault is resolved)
+ */
+
+class AgendaSearch {
+
+    private final Analyzer analyzer;
+    private final TranspositionTable transpositionTable;
+    private final BudgetMonitor monitor;
+    private final SearchStrategy strategy;
+
+    //true when looking for a counterexample (--valid), false when looking for a witness (--weakly-valid)
+    private boolean counterexampleSearch;
+
+    private Queue<Configuration> agenda;
+    //configurations already explored -> least depth at which they were explored
+    private Map<TranspositionTable.Key, Integer> explored;
+    //number of configurations added to the agenda (ties of BEST_FIRST are broken by insertion order)
+    private long added;
+
+    //ITERATIVE_DEEPENING: configurations deeper than depthBound are left out (and cut is set)
+    private int depthBound;
+    private boolean cut;
+
+    AgendaSearch(Analyzer analyzer, TranspositionTable transpositionTable, BudgetMonitor monitor, SearchStrategy strategy){
+        if(strategy == SearchStrategy.DFS)
+            throw new IllegalArgumentException("depth-first analyses are run by Analyzer");
+        this.analyzer = analyzer;
+        this.transpositionTable = transpositionTable;
+        this.monitor = monitor;
+        this.strategy = strategy;
+    }
+
+    boolean analyseSequence(Application app, Action[] trace){
+        this.counterexampleSearch = true;
+        return this.deepen(app, rootApp -> this.searchSequence(rootApp, trace));
+    }
+
+    boolean analysePlan(Application app, CompiledPlan plan, boolean weakValidity){
+        this.counterexampleSearch = !weakValidity;
+        if(weakValidity)
+            return this.deepen(app, rootApp -> this.searchWeakPlan(rootApp, plan));
+        return this.deepen(app, rootApp -> this.searchPlan(rootApp, plan));
+    }
+
+    //ITERATIVE_DEEPENING searches again from a copy of app, increasing the depth bound by one, until it
+    //finds a counterexample (or a witness) or it leaves out no configuration (the others search once):
+    //the previous round found no counterexample, hence the one found is a shortest one
+    private boolean deepen(Application app, Function<Application, Boolean> search){
+        if(this.strategy != SearchStrategy.ITERATIVE_DEEPENING){
+            this.depthBound = Integer.MAX_VALUE;
+            return search.apply(app);
+        }
+
+        for(this.depthBound = 1; ; this.depthBound++){
+            this.cut = false;
+            boolean verdict = search.apply(this.analyzer.fork(app));
+            if(verdict != this.counterexampleSearch || !this.cut)
+                return verdict;
+        }
+    }
+
+
+    //#region AGENDA
+
+    private void newAgenda(){
+        switch(this.strategy){
+            case BFS:
+                this.agenda = new ArrayDeque<>();
+                break;
+            case ITERATIVE_DEEPENING:
+                this.agenda = Collections.asLifoQueue(new ArrayDeque<>());
+                break;
+            default:
+                this.agenda = new PriorityQueue<>((c1, c2) -> {
+                    if(c1.faults != c2.faults)
+                        return this.counterexampleSearch ? Integer.compare(c2.faults, c1.faults) : Integer.compare(c1.faults, c2.faults);
+                    return Long.compare(c1.order, c2.order);
+                });
+        }
+        this.explored = new HashMap<>();
+        this.added = 0;
+    }
+
+    //adds the configurations reached from the same configuration, so that they are explored in their order
+    //if they have the same priority (the stack of ITERATIVE_DEEPENING gets them in reverse order)
+    private void addAll(List<Configuration> children){
+        if(this.strategy == SearchStrategy.ITERATIVE_DEEPENING)
+            Collections.reverse(children);
+
+        for(Configuration child : children){
+            if(child.depth > this.depthBound){
+                this.cut = true;
+                continue;
+            }
+            child.order = this.added++;
+            if(this.strategy == SearchStrategy.BEST_FIRST)
+                child.faults = child.countPendingFaults();
+            this.agenda.add(child);
+        }
+    }
+
+    //true if the configuration identified by key was never explored (with at most depth executed actions)
+    private boolean firstVisit(TranspositionTable.Key key, int depth){
+        Integer exploredDepth = this.explored.get(key);
+        if(exploredDepth != null && exploredDepth <= depth){
+            this.monitor.getMetrics().recordMemoHits(1);
+            return false;
+        }
+        this.monitor.exploreState(depth);
+        this.explored.put(key, depth);
+        return true;
+    }
+
+    private abstract static class Configuration {
+        //number of actions executed to reach the configuration
+        final int depth;
+        long order;
+        int faults;
+
+        Configuration(int depth){
+            this.depth = depth;
+        }
+
+        abstract int countPendingFaults();
+
+        static int countPendingFaults(Application app){
+            try {
+                return app.getGlobalState().getPendingFaults().size();
+            } catch (InstanceUnknownException e) {
+                //the pending faults are those of the active instances, which are known
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    //#endregion
+
+
+    //#region SEQUENCE ANALYSIS
+
+    private boolean searchSequence(Application app, Action[] trace){
+        this.newAgenda();
+        this.addAll(new ArrayList<>(Arrays.asList(new SequenceConfig(app, 0, 0))));
+
+        SequenceConfig config;
+        while((config = (SequenceConfig) this.agenda.poll()) != null){
+            if(config.cursor == trace.length){
+                this.monitor.exploreLinearization();
+                continue;
+            }
+            if(!this.firstVisit(this.transpositionTable.keyOf(config.app.getGlobalState(), config.cursor), config.depth))
+                continue;
+
+            Action action = trace[config.cursor];
+            Branching branching = this.analyzer.branch(config.app, action);
+            if(branching.isFailed()){
+                this.analyzer.reportFailure(this.analyzer.getReport(), action, branching);
+                return false;
+            }
+
+            List<Configuration> children = new ArrayList<>();
+            List<Branching.Branch> branches = branching.getBranches();
+            for(int i = 0; i < branches.size(); i++){
+                Branching.Branch branch = branches.get(i);
+
+                Application branchApp;
+                try {
+                    branchApp = this.analyzer.enterBranch(config.app, branch, i == branches.size() - 1);
+                } catch (Exception e) {
+                    this.analyzer.reportFailure(this.analyzer.getReport(), action, Branching.failure(e, this.analyzer.snapshot(config.app)));
+                    return false;
+                }
+
+                int nextCursor = branch.hasConsumedAction() ? config.cursor + 1 : config.cursor;
+                children.add(new SequenceConfig(branchApp, nextCursor, config.depth + 1));
+            }
+            this.addAll(children);
+        }
+        return true;
+    }
+
+    private static class SequenceConfig extends Configuration {
+        private final Application app;
+        private final int cursor;
+
+        private SequenceConfig(Application app, int cursor, int depth){
+            super(depth);
+            this.app = app;
+            this.cursor = cursor;
+        }
+
+        @Override
+        int countPendingFaults(){
+            return Configuration.countPendingFaults(this.app);
+        }
+    }
+
+    //#endregion
+
+
+    //#region VALID PLAN ANALYSIS
+
+    private boolean searchPlan(Application app, CompiledPlan plan){
+        this.newAgenda();
+        this.addAll(new ArrayList<>(Arrays.asList(new PlanConfig(app, TraceFragment.EMPTY, plan.newFrontier(), null, new BitSet(), 0))));
+
+        PlanConfig config;
+        while((config = (PlanConfig) this.agenda.poll()) != null){
+            if(config.retryAction == null && config.remainingActions.isEmpty()){
+                this.monitor.exploreLinearization();
+                continue;
+            }
+            TranspositionTable.Key key = this.transpositionTable.keyOf(
+                config.app.getGlobalState(),
+                Arrays.asList(config.remainingActions.getRemaining(), config.retryAction, config.sleepSet)
+            );
+            if(!this.firstVisit(key, config.depth))
+                continue;
+
+            List<Configuration> children = new ArrayList<>();
+            if(config.retryAction != null){
+                if(!this.step(config.app, config.traceFragment, config.remainingActions, config.retryAction, config.sleepSet, config.depth, children))
+                    return false;
+            }
+            else{
+                //each enabled action goes on with its own copy of the application and of the remaining actions
+                BitSet exploredActions = (BitSet) config.sleepSet.clone();
+                int next;
+                for(int a = this.analyzer.nextChoice(config.remainingActions, config.sleepSet, 0); a >= 0; a = next){
+                    next = this.analyzer.nextChoice(config.remainingActions, config.sleepSet, a + 1);
+                    Action action = plan.getAction(a);
+                    CompiledPlan.Frontier remainingActions = config.remainingActions.copy();
+                    remainingActions.execute(a);
+
+                    BitSet sleepSet = this.analyzer.sleepSetAfter(plan, a, exploredActions, Collections.singletonList(config.app));
+                    Application stepApp = next < 0 ? config.app : this.analyzer.fork(config.app);
+                    if(!this.step(stepApp, config.traceFragment.append(action), remainingActions, action, sleepSet, config.depth, children))
+                        return false;
+                    exploredActions.set(a);
+                }
+            }
+            this.addAll(children);
+        }
+        return true;
+    }
+
+    //executes action on app and adds the configurations of its branches to children (false if it fails)
+    private boolean step(Application app, TraceFragment traceFragment, CompiledPlan.Frontier remainingActions, Action action, BitSet sleepSet, int depth, List<Configuration> children){
+        //the failure of the step is reported with the trace it belongs to
+        AnalysisReport failure = new AnalysisReport();
+        Branching branching = this.analyzer.branch(app, action);
+        if(branching.isFailed()){
+            this.analyzer.reportFailure(failure, action, branching);
+            this.analyzer.reportFailedTrace(failure, remainingActions.completeTrace(traceFragment.toSequence()));
+            return false;
+        }
+
+        List<Branching.Branch> branches = branching.getBranches();
+        for(int i = 0; i < branches.size(); i++){
+            Branching.Branch branch = branches.get(i);
+
+            Application branchApp;
+            try {
+                branchApp = this.analyzer.enterBranch(app, branch, i == branches.size() - 1);
+            } catch (Exception e) {
+                this.analyzer.reportFailure(failure, action, Branching.failure(e, this.analyzer.snapshot(app)));
+                this.analyzer.reportFailedTrace(failure, remainingActions.completeTrace(traceFragment.toSequence()));
+                return false;
+            }
+
+            Action retryAction = branch.hasConsumedAction() ? null : action;
+            children.add(new PlanConfig(branchApp, traceFragment, remainingActions, retryAction, sleepSet, depth + 1));
+        }
+        return true;
+    }
+
+    //configurations share their trace fragment and their remaining actions, which they never change
+    private static class PlanConfig extends Configuration {
+        private final Application app;
+        private final TraceFragment traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final Action retryAction;
+        private final BitSet sleepSet;
+
+        private PlanConfig(Application app, TraceFragment traceFragment, CompiledPlan.Frontier remainingActions, Action retryAction, BitSet sleepSet, int depth){
+            super(depth);
+            this.app = app;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.retryAction = retryAction;
+            this.sleepSet = sleepSet;
+        }
+
+        @Override
+        int countPendingFaults(){
+            return Configuration.countPendingFaults(this.app);
+        }
+    }
+
+    //#endregion
+
+
+    //#region WEAKLY VALID PLAN ANALYSIS
+
+    private boolean searchWeakPlan(Application app, CompiledPlan plan){
+        this.newAgenda();
+        this.addAll(new ArrayList<>(Arrays.asList(new WeakConfig(Collections.singletonList(app), TraceFragment.EMPTY, plan.newFrontier(), new BitSet(), 0))));
+
+        WeakConfig config;
+        while((config = (WeakConfig) this.agenda.poll()) != null){
+            //witness found
+            if(config.frontier.isEmpty() || config.remainingActions.isEmpty()){
+                this.monitor.exploreLinearization();
+                return true;
+            }
+
+            List<GlobalState> frontierStates = new ArrayList<>();
+            for(Application frontierApp : config.frontier)
+                frontierStates.add(frontierApp.getGlobalState());
+            TranspositionTable.Key key = this.transpositionTable.keyOf(
+                frontierStates,
+                Arrays.asList(config.remainingActions.getRemaining(), config.sleepSet)
+            );
+            if(!this.firstVisit(key, config.depth))
+                continue;
+
+            List<Configuration> children = new ArrayList<>();
+            BitSet exploredActions = (BitSet) config.sleepSet.clone();
+            for(int a = this.analyzer.nextChoice(config.remainingActions, config.sleepSet, 0); a >= 0; a = this.analyzer.nextChoice(config.remainingActions, config.sleepSet, a + 1)){
+                Action action = plan.getAction(a);
+                CompiledPlan.Frontier remainingActions = config.remainingActions.copy();
+                remainingActions.execute(a);
+                TraceFragment traceFragment = config.traceFragment.append(action);
+                BitSet sleepSet = this.analyzer.sleepSetAfter(plan, a, exploredActions, config.frontier);
+
+                AnalysisReport failure = new AnalysisReport();
+                List<Application> newFrontier = this.analyzer.advance(this.analyzer.cloneApps(config.frontier), action, failure);
+                if(newFrontier == null){
+                    //any trace starting with traceFragment fails (the first one found is reported)
+                    if(this.analyzer.getReport().getFailedSequence() == null)
+                        this.analyzer.reportFailedTrace(failure, remainingActions.completeTrace(traceFragment.toSequence()));
+                }
+                else
+                    children.add(new WeakConfig(newFrontier, traceFragment, remainingActions, sleepSet, config.depth + 1));
+                exploredActions.set(a);
+            }
+            this.addAll(children);
+        }
+        return false;
+    }
+
+    private static class WeakConfig extends Configuration {
+        private final List<Application> frontier;
+        private final TraceFragment traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final BitSet sleepSet;
+
+        private WeakConfig(List<Application> frontier, TraceFragment traceFragment, CompiledPlan.Frontier remainingActions, BitSet sleepSet, int depth){
+            super(depth);
+            this.frontier = frontier;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.sleepSet = sleepSet;
+        }
+
+        @Override
+        int countPendingFaults(){
+            int faults = 0;
+            for(Application app : this.frontier)
+                faults += Configuration.countPendingFaults(app);
+            return faults;
+        }
+    }
+
+    //#endregion
+}
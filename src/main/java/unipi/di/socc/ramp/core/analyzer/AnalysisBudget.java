@@ -0,0 +1,43 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+/**
+ * limits of an analysis, after which it stops with an inconclusive report (see AnalysisReport.isInconclusive)
+    * time: milliseconds of wall-clock time since the analysis started
+    * states: number of explored configurations (i.e., global states with what is still to be executed)
+    * memory: bytes of used heap
+    * a limit that is not positive is no limit (the default)
+ */
+
+public class AnalysisBudget {
+
+    public enum Limit {
+        TIME,
+        STATES,
+        MEMORY
+    }
+
+    private long maxMillis;
+    private long maxStates;
+    private long maxHeapBytes;
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+    public void setMaxMillis(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    public long getMaxStates() {
+        return maxStates;
+    }
+    public void setMaxStates(long maxStates) {
+        this.maxStates = maxStates;
+    }
+
+    public long getMaxHeapBytes() {
+        return maxHeapBytes;
+    }
+    public void setMaxHeapBytes(long maxHeapBytes) {
+        this.maxHeapBytes = maxHeapBytes;
+    }
+}
@@ -0,0 +1,188 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * what an analysis explored and where it spent its time (see AnalysisReport.getMetrics)
+    * explored states: configurations explored (i.e., whose verdict was not memoized)
+    * explored linearizations: completed traces (a trace is counted once for each combination of
+      fault branches reaching its end), and the estimated linearizations of the analysed plan
+      (estimated on the first request, as the estimate executes many random linearizations)
+    * clones: copies of applications made by the analysis (see Application.fork), and the bytes
+      they allocated (0 if the JVM cannot measure the memory allocated by a thread)
+    * fault branches: branches entered by resolving or handling a pending fault
+    * memo hits: configurations whose verdict was found in the memo table (or, for the search
+      strategies other than DFS, that were already explored)
+    * rule times: nanoseconds spent in each rule of the model, and the times it was applied
+    * peak depth: most actions executed to reach an explored configuration (including the opEnds
+      executed again after their fault is resolved, except for weakly valid plans)
+    * the counters can be updated by the threads of a parallel analysis
+ */
+
+public class AnalysisMetrics {
+
+    public enum Rule {
+        OP_START("opStart"),
+        OP_END("opEnd"),
+        SCALE_OUT("scaleOut"),
+        SCALE_OUT_C("scaleOutC"),
+        SCALE_IN("scaleIn"),
+        HANDLE_FAULT("handleFault"),
+        RESOLVE_FAULT("resolveFault");
+
+        private final String ruleName;
+
+        private Rule(String ruleName){
+            this.ruleName = ruleName;
+        }
+
+        public String getRuleName(){
+            return ruleName;
+        }
+
+        /**
+         * @param ruleName name of a rule (e.g., the name of an action)
+         * @return the rule with that name (null if none)
+         */
+        public static Rule of(String ruleName){
+            for(Rule rule : Rule.values()){
+                if(rule.ruleName.equals(ruleName))
+                    return rule;
+            }
+            return null;
+        }
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    //updated by BudgetMonitor, which checks them against the budget
+    final AtomicLong exploredStates;
+    final AtomicLong exploredLinearizations;
+    private double estimatedLinearizations;
+    //null once the linearizations are estimated
+    private DoubleSupplier linearizationsEstimator;
+
+    private final LongAdder clones;
+    private final LongAdder clonedBytes;
+    private final LongAdder faultBranches;
+    private final LongAdder memoHits;
+
+    //[rule.ordinal()] -> nanoseconds spent in the rule, and its applications
+    private final LongAdder[] ruleNanos;
+    private final LongAdder[] ruleApplications;
+
+    private final AtomicInteger peakDepth;
+
+    public AnalysisMetrics(){
+        this.exploredStates = new AtomicLong();
+        this.exploredLinearizations = new AtomicLong();
+        this.clones = new LongAdder();
+        this.clonedBytes = new LongAdder();
+        this.faultBranches = new LongAdder();
+        this.memoHits = new LongAdder();
+        this.ruleNanos = new LongAdder[Rule.values().length];
+        this.ruleApplications = new LongAdder[Rule.values().length];
+        for(Rule rule : Rule.values()){
+            this.ruleNanos[rule.ordinal()] = new LongAdder();
+            this.ruleApplications[rule.ordinal()] = new LongAdder();
+        }
+        this.peakDepth = new AtomicInteger();
+    }
+
+    //#region getter
+
+    public long getExploredStates() {
+        return exploredStates.get();
+    }
+
+    public long getExploredLinearizations() {
+        return exploredLinearizations.get();
+    }
+
+    public synchronized double getEstimatedLinearizations() {
+        if(this.linearizationsEstimator != null){
+            this.estimatedLinearizations = this.linearizationsEstimator.getAsDouble();
+            this.linearizationsEstimator = null;
+        }
+        return estimatedLinearizations;
+    }
+
+    public long getClones() {
+        return clones.sum();
+    }
+
+    public long getClonedBytes() {
+        return clonedBytes.sum();
+    }
+
+    public long getFaultBranches() {
+        return faultBranches.sum();
+    }
+
+    public long getMemoHits() {
+        return memoHits.sum();
+    }
+
+    public long getRuleNanos(Rule rule) {
+        return ruleNanos[rule.ordinal()].sum();
+    }
+
+    public long getRuleApplications(Rule rule) {
+        return ruleApplications[rule.ordinal()].sum();
+    }
+
+    public int getPeakDepth() {
+        return peakDepth.get();
+    }
+
+    //#endregion
+
+    //#region recording (by the analysis)
+
+    synchronized void setLinearizationsEstimator(DoubleSupplier linearizationsEstimator) {
+        this.linearizationsEstimator = linearizationsEstimator;
+    }
+
+    void recordClone(long bytes){
+        this.clones.increment();
+        this.clonedBytes.add(bytes);
+    }
+
+    void recordFaultBranch(){
+        this.faultBranches.increment();
+    }
+
+    void recordMemoHits(long hits){
+        this.memoHits.add(hits);
+    }
+
+    //rule was applied from System.nanoTime() = start until now (nothing is recorded if rule is null)
+    void recordRule(Rule rule, long start){
+        if(rule == null)
+            return;
+        this.ruleNanos[rule.ordinal()].add(System.nanoTime() - start);
+        this.ruleApplications[rule.ordinal()].increment();
+    }
+
+    void recordDepth(int depth){
+        if(depth > this.peakDepth.get())
+            this.peakDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    //#endregion
+
+    //bytes allocated so far by the current thread (0 if the JVM cannot measure them)
+    static long allocatedBytes(){
+        if(!(THREADS instanceof com.sun.management.ThreadMXBean))
+            return 0;
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) THREADS;
+        if(!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled())
+            return 0;
+        return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -12,11 +12,19 @@ public class AnalysisReport {
 
     public GlobalState faultedGS;
 
+    //limit of the budget reached by the analysis, which is hence inconclusive (null if it completed)
+    private AnalysisBudget.Limit exhaustedLimit;
+
+    //what the analysis explored (also when it is inconclusive)
+    private AnalysisMetrics metrics;
+
     public AnalysisReport() {
         this.failedSequence = null;
         this.failException = null;
         this.failedAction = null;
         this.faultedGS = null;
+        this.exhaustedLimit = null;
+        this.metrics = new AnalysisMetrics();
     }
 
     //#region getter & setter
@@ -57,6 +65,26 @@ public class AnalysisReport {
         this.failedSequence = failedSequence;
     }
 
+    public boolean isInconclusive() {
+        return this.exhaustedLimit != null;
+    }
+
+    public AnalysisBudget.Limit getExhaustedLimit() {
+        return exhaustedLimit;
+    }
+
+    public void setExhaustedLimit(AnalysisBudget.Limit exhaustedLimit) {
+        this.exhaustedLimit = exhaustedLimit;
+    }
+
+    public AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
 
     //#endregion
 
@@ -1,110 +1,317 @@
 package unipi.di.socc.ramp.core.analyzer;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.DoubleSupplier;
 
 import unipi.di.socc.ramp.cli.parser.PrintingUtilities;
 import unipi.di.socc.ramp.core.analyzer.actions.Action;
 import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
 import unipi.di.socc.ramp.core.model.Application;
 import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.GlobalState;
 import unipi.di.socc.ramp.core.model.NodeInstance;
+import unipi.di.socc.ramp.core.model.Trail;
 
+import unipi.di.socc.ramp.core.model.exceptions.FailedFaultHandlingExecption;
 import unipi.di.socc.ramp.core.model.exceptions.FailedOperationException;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
 
 public class Analyzer {
     
     private AnalysisReport report;
 
+    //verdicts of the already analysed <global state, position> pairs of the current analysis
+    private final TranspositionTable transpositionTable;
+
+    //partial order reduction: only one trace among those equivalent up to swapping independent actions
+    //(in the global states reached by the analysis, see IndependenceRelation), which reduces the analysed
+    //traces but not the reached global states
+    private boolean partialOrderReduction;
+    private IndependenceRelation independence;
+
+    //number of threads of the analysis (1 means sequential analysis)
+    private int parallelism;
+
+    //sequential analyses explore a single global state, undoing its changes on backtrack (instead of cloning it)
+    private boolean trailMode;
+
+    //global states equal up to renaming the replicas not named by the analysed actions are analysed once
+    private boolean symmetryReduction;
+
+    //the analysed global states are persistent, so that branches fork them instead of cloning them
+    private boolean persistentStates;
+
+    //order in which the configurations are explored (the analyses other than DFS are sequential)
+    private SearchStrategy searchStrategy;
+
+    //limits of the analyses, and the monitor counting what the current analysis explored (see AnalysisMetrics)
+    private AnalysisBudget budget;
+    private BudgetMonitor monitor;
+    //random linearizations probed to estimate those of a plan (see CompiledPlan.estimateLinearizations)
+    private static final int ESTIMATE_PROBES = 100;
+
 
     public Analyzer(){
         this.report = new AnalysisReport();
+        this.transpositionTable = new TranspositionTable();
+        this.parallelism = 1;
+        this.searchStrategy = SearchStrategy.DFS;
+        this.budget = new AnalysisBudget();
     }
 
     public AnalysisReport getReport(){
         return report;
     }
 
+    public boolean isPartialOrderReduction() {
+        return partialOrderReduction;
+    }
+    public void setPartialOrderReduction(boolean partialOrderReduction) {
+        this.partialOrderReduction = partialOrderReduction;
+    }
+
+    public boolean isTrailMode() {
+        return trailMode;
+    }
+    public void setTrailMode(boolean trailMode) {
+        this.trailMode = trailMode;
+    }
+
+    public boolean isSymmetryReduction() {
+        return symmetryReduction;
+    }
+    public void setSymmetryReduction(boolean symmetryReduction) {
+        this.symmetryReduction = symmetryReduction;
+    }
+
+    public boolean isPersistentStates() {
+        return persistentStates;
+    }
+    public void setPersistentStates(boolean persistentStates) {
+        this.persistentStates = persistentStates;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+    public void setParallelism(int parallelism) {
+        if(parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+    public void setSearchStrategy(SearchStrategy searchStrategy) {
+        if(searchStrategy == null)
+            throw new NullPointerException("searchStrategy must not be null");
+        this.searchStrategy = searchStrategy;
+    }
+
+    public AnalysisBudget getBudget() {
+        return budget;
+    }
+    public void setBudget(AnalysisBudget budget) {
+        if(budget == null)
+            throw new NullPointerException("budget must not be null");
+        this.budget = budget;
+    }
+
 
 
     //#region utilities
 
 
-    //clone a list making another list with the same object refs
-    private <E> List<E> cloneList(List<E> list){
-        List<E> cloneList = new ArrayList<>();
-        for(E element : list)
-            cloneList.add(element);
+    //clone a list of applications making another list with their independent copies (see Application.fork)
+    List<Application> cloneApps(List<Application> apps){
+        List<Application> clonedApps = new ArrayList<>();
+        for(Application app : apps)
+            clonedApps.add(this.fork(app));
 
-        return cloneList;
+        return clonedApps;
     }
 
     //#endregion
 
 
     //########################### OFFERED METHODS ###########################
+
+    /**
+     * @param app application to analyse the sequence from (it is not changed)
+     * @param property --valid
+     * @return true if the sequence is valid, false if it is not or if the analysis ran out of its budget
+     *   before finding a verdict, which is inconclusive (see AnalysisReport.isInconclusive)
+     */
     public boolean sequenceAnalysis(Application app, Sequence sequence, String property) throws UnsupportedAnalysisException {
         // Case: valid sequence analysis
         if(property.equals("--valid")){
-            //saves the sequence
-            this.report.setFailedSequence(new Sequence(this.cloneList(sequence.getActions())));
-            return isValidSequence(app, sequence);
+            //the sequence is compiled into an array that the analysis walks with a cursor
+            //(and that is also saved as the failed sequence)
+            Action[] trace = sequence.getActions().toArray(new Action[0]);
+            //each analysis has its own report (nothing is left from the previous ones)
+            this.report = new AnalysisReport();
+            this.report.setFailedSequence(new Sequence(new ArrayList<>(Arrays.asList(trace))));
+            //the analysis changes its own copy of app (whose global state is reused by the last branches)
+            app = app.clone();
+            this.transpositionTable.clear();
+            this.transpositionTable.setSymmetryReduction(
+                this.symmetryReduction ? new SymmetryReduction(sequence.getActions()) : null
+            );
+            if(this.persistentStates)
+                app.getGlobalState().makePersistent();
+            app.compileProtocols();
+            app.getGlobalState().buildIndexes();
+
+            this.monitor = new BudgetMonitor(this.budget, this.report.getMetrics());
+            int memoHits = this.transpositionTable.getHits();
+            try {
+                return this.analyseSequence(app, trace);
+            } catch (BudgetMonitor.Exhausted e) {
+                this.report.setExhaustedLimit(e.getLimit());
+                return false;
+            } finally {
+                this.reportMetrics(() -> 1, memoHits);
+            }
         }
         // Default: unsupported analysis
         throw new UnsupportedAnalysisException();
     }
 
+    private boolean analyseSequence(Application app, Action[] trace){
+        //the configurations are explored in the order of a search strategy other than DFS
+        if(this.searchStrategy != SearchStrategy.DFS)
+            return new AgendaSearch(this, this.transpositionTable, this.monitor, this.searchStrategy).analyseSequence(app, trace);
+        //the branches of the faults are explored in parallel
+        if(this.parallelism > 1)
+            return new ParallelAnalysis(this, this.transpositionTable, this.monitor, this.parallelism).analyseSequence(app, trace);
+
+        this.startTrail(app);
+        try {
+            return this.isValidSequence(app, trace, 0);
+        } finally {
+            this.stopTrail(app);
+        }
+    }
+
+    /**
+     * @param app application to analyse the plan from (it is not changed)
+     * @param property --valid or --weakly-valid
+     * @return true if the plan has the property, false if it has not or if the analysis ran out of its budget
+     *   before finding a verdict, which is inconclusive (see AnalysisReport.isInconclusive)
+     */
     public boolean planAnalysis(Application app, Plan plan, String property) throws UnsupportedAnalysisException {
-        Sequence actions = new Sequence(plan.getActions());
+        CompiledPlan compiledPlan = new CompiledPlan(plan);
+        //the analysis changes its own copy of app (whose global state is reused by the last branches)
+        app = app.clone();
+        if(this.partialOrderReduction)
+            this.independence = new IndependenceRelation(plan.getActions());
+        this.transpositionTable.clear();
+        this.transpositionTable.setSymmetryReduction(
+            this.symmetryReduction ? new SymmetryReduction(plan.getActions()) : null
+        );
+        if(this.persistentStates)
+            app.getGlobalState().makePersistent();
+        app.compileProtocols();
+        app.getGlobalState().buildIndexes();
+
+        //each analysis has its own report (nothing is left from the previous ones)
+        this.report = new AnalysisReport();
+        this.monitor = new BudgetMonitor(this.budget, this.report.getMetrics());
+        int memoHits = this.transpositionTable.getHits();
+        try {
+            return this.analysePlan(app, compiledPlan, property);
+        } catch (BudgetMonitor.Exhausted e) {
+            this.report.setExhaustedLimit(e.getLimit());
+            return false;
+        } finally {
+            this.reportMetrics(() -> compiledPlan.estimateLinearizations(ESTIMATE_PROBES, new Random(0)), memoHits);
+        }
+    }
+
+    private boolean analysePlan(Application app, CompiledPlan compiledPlan, String property) throws UnsupportedAnalysisException {
+        // Case: analysis with a search strategy other than DFS
+        if(this.searchStrategy != SearchStrategy.DFS && (property.equalsIgnoreCase("--weakly-valid") || property.equalsIgnoreCase("--valid")))
+            return new AgendaSearch(this, this.transpositionTable, this.monitor, this.searchStrategy)
+                .analysePlan(app, compiledPlan, property.equalsIgnoreCase("--weakly-valid"));
+        // Case: parallel analysis
+        if(this.parallelism > 1 && (property.equalsIgnoreCase("--weakly-valid") || property.equalsIgnoreCase("--valid")))
+            return new ParallelAnalysis(this, this.transpositionTable, this.monitor, this.parallelism)
+                .analysePlan(app, compiledPlan, property.equalsIgnoreCase("--weakly-valid"));
         // Case: weakly valid plan analysis
-        if(property.equalsIgnoreCase("--weakly-valid"))
-            return isValidPlan(app,plan,new Sequence(),actions.clone(),true);
+        if(property.equalsIgnoreCase("--weakly-valid")){
+            List<Application> frontier = new ArrayList<>();
+            frontier.add(app);
+            return isWeaklyValidPlan(frontier,new Sequence(),compiledPlan.newFrontier(),new BitSet());
+        }
         // Case: valid plan analysis
-        if(property.equalsIgnoreCase("--valid"))
-            return isValidPlan(app,plan,new Sequence(),actions.clone(),false);
+        if(property.equalsIgnoreCase("--valid")){
+            this.startTrail(app);
+            try {
+                return isValidPlan(app,new Sequence(),compiledPlan.newFrontier(),null,new BitSet());
+            } finally {
+                this.stopTrail(app);
+            }
+        }
         // Default: unsupported analysis
         throw new UnsupportedAnalysisException();
     }
+
+    //completes the metrics of the analysis (memoHits is the number of hits of the memo table before it)
+    //the linearizations are estimated only if they are requested
+    private void reportMetrics(DoubleSupplier linearizationsEstimator, int memoHits){
+        this.report.getMetrics().setLinearizationsEstimator(linearizationsEstimator);
+        this.report.getMetrics().recordMemoHits(this.transpositionTable.getHits() - memoHits);
+    }
     
 
-    //#region SEQUENCE ANALYSIS
+    //#region STEP
 
-    private boolean isValidSequence(Application app, Sequence sequence) {
+    //in trail mode, app starts recording its changes
+    private void startTrail(Application app){
+        if(this.trailMode)
+            app.getGlobalState().setTrail(new Trail());
+    }
 
-        //base case
-        if(sequence.getActions().isEmpty())
-            return true;
+    //undoes all the recorded changes of app, which stops recording them
+    private void stopTrail(Application app){
+        Trail trail = app.getGlobalState().getTrail();
+        if(trail != null){
+            trail.rollback(0);
+            app.getGlobalState().setTrail(null);
+        }
+    }
 
-        // pop the first action of the sequential plan
-        Action action = sequence.getActions().get(0);
+    //executes action on app and computes the branches to explore after it
+    Branching branch(Application app, Action action) {
         boolean faultedOpEnd = false;
 
-
         try {
-            app.execute(action);
-            sequence.getActions().remove(0);
+            long start = System.nanoTime();
+            try {
+                app.execute(action);
+            } finally {
+                this.report.getMetrics().recordRule(AnalysisMetrics.Rule.of(action.getActionName()), start);
+            }
         } catch (FailedOperationException e) {
             faultedOpEnd = true;
             //go on, this will be a fault
         } catch (Exception e) {
-            this.report.setFailedAction(action);
-            this.report.setFailException(e);
-            this.report.setGlobalState(app.getGlobalState());
-            return false;
+            return Branching.failure(e, this.snapshot(app));
         }
 
-
-
-        //check the branches of the faults
-        if(!checkFaultsValid(app, sequence, faultedOpEnd)){
-            this.report.setFailedAction(action);
-            this.report.setGlobalState(app.getGlobalState());
-            return false;
-        }
-
-        return true;
-    }
-    private boolean checkFaultsValid(Application app, Sequence sequence, boolean faultedOpEnd) {
         //list of broken instances and pending faults of app just after the execution of action
         List<NodeInstance> brokenInstances;
         List<Fault> pendingFaults;
@@ -112,121 +319,620 @@ public class Analyzer {
             brokenInstances = app.getGlobalState().getBrokenInstances();
             pendingFaults = app.getGlobalState().getPendingFaults();
         } catch (Exception e) {
-            return false;
+            return Branching.failure(e, this.snapshot(app));
         }
 
-
         //application of no-broken-instances
         if(!brokenInstances.isEmpty()){
             try {
                 //this will kill all the broken instances
-                app.scaleIn(brokenInstances.get(0).getID());
+                long start = System.nanoTime();
+                try {
+                    app.scaleIn(brokenInstances.get(0).getID());
+                } finally {
+                    this.report.getMetrics().recordRule(AnalysisMetrics.Rule.SCALE_IN, start);
+                }
             } catch (Exception e) {
-                return false;
+                return Branching.failure(e, this.snapshot(app));
             }
         }
 
-        if(app.isPiDeterministic()){
+        Branching branching = Branching.success();
+        if(!app.isPiDeterministic())
+            return branching;
 
-            //branching: we keep exploring not handling a single fault
-            if(!faultedOpEnd && !this.isValidSequence(app.clone(), sequence))
-                return false;
+        //branching: we keep exploring not handling a single fault
+        if(!faultedOpEnd)
+            branching.addBranch(null, false, true);
 
-            //branching: for each fault we fix it and starts exploring
-            if(!pendingFaults.isEmpty()){
-                for(Fault pendingFault : pendingFaults){
-
-                    Application clonedApp = app.clone();
-
-                    boolean isResolvableFault;
-                    try {
-                        isResolvableFault = clonedApp.getGlobalState().isResolvableFault(pendingFault);
-                    } catch (Exception e) {
-                        this.report.faultedGS = clonedApp.getGlobalState();
-                        return false;
-                    }
-
-                    if(isResolvableFault){
-                        try {
-                            //fix the fault by creating a new runtime binding that safisfy it
-                            clonedApp.resolveFault(pendingFault);
-                            if(!this.isValidSequence(clonedApp, sequence))
-                                return false;
-
-                        } catch (Exception e) {
-                            return false;
-                        }
-                    }else{
-                        try {
-                            //handle the fault by applying the fault handler
-                            clonedApp.handleFault(pendingFault);
-                            
-                            if(faultedOpEnd)
-                                sequence.getActions().remove(0);
-
-                            if(!this.isValidSequence(clonedApp, sequence))
-                                return false;
-
-                        } catch (Exception e) {
-                            return false;
-                        }
-                    }
+        //branching: for each fault we fix it and starts exploring
+        for(Fault pendingFault : pendingFaults){
+            boolean isResolvableFault;
+            try {
+                isResolvableFault = app.getGlobalState().isResolvableFault(pendingFault);
+            } catch (Exception e) {
+                return Branching.failure(e, this.snapshot(app));
+            }
+            //a resolved fault of a failed opEnd lets the opEnd be executed again
+            branching.addBranch(pendingFault, isResolvableFault, !(faultedOpEnd && isResolvableFault));
+        }
+
+        return branching;
+    }
+
+    /**
+     * @param app application reached by the last executed action
+     * @param branch one of the branches of the last executed action
+     * @param last true if no other branch has to be entered from app
+     * @return the application of the branch (see fork)
+     */
+    Application enterBranch(Application app, Branching.Branch branch, boolean last)
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException,
+            FailedFaultHandlingExecption
+    {
+        Application branchApp = this.fork(app, last);
+
+        if(branch.getFault() != null){
+            this.report.getMetrics().recordFaultBranch();
+            long start = System.nanoTime();
+            if(branch.isResolvableFault()){
+                //fix the fault by creating a new runtime binding that safisfy it
+                try {
+                    branchApp.resolveFault(branch.getFault());
+                } finally {
+                    this.report.getMetrics().recordRule(AnalysisMetrics.Rule.RESOLVE_FAULT, start);
+                }
+            }
+            else{
+                //handle the fault by applying the fault handler
+                try {
+                    branchApp.handleFault(branch.getFault());
+                } finally {
+                    this.report.getMetrics().recordRule(AnalysisMetrics.Rule.HANDLE_FAULT, start);
                 }
             }
         }
-        return true;
+        return branchApp;
     }
 
+    //app itself if it records its changes on a trail (or if no other branch starts from it), otherwise a fork of app
+    //(app is never the application passed to the analysis, which is cloned first)
+    Application fork(Application app, boolean last){
+        if(last || app.getGlobalState().getTrail() != null)
+            return app;
+        return this.fork(app);
+    }
+
+    //copy of app that can be changed independently from it (see Application.fork), counted in the metrics
+    Application fork(Application app){
+        long allocated = AnalysisMetrics.allocatedBytes();
+        Application forkedApp = app.fork();
+        this.report.getMetrics().recordClone(AnalysisMetrics.allocatedBytes() - allocated);
+        return forkedApp;
+    }
+
+    //point of the trail of app to roll back to (0 if app does not record its changes)
+    private int mark(Application app){
+        Trail trail = app.getGlobalState().getTrail();
+        return trail == null ? 0 : trail.mark();
+    }
+
+    private void rollback(Application app, int mark){
+        Trail trail = app.getGlobalState().getTrail();
+        if(trail != null)
+            trail.rollback(mark);
+    }
+
+    //global state of app to report (a copy, if the global state of app is going to be rolled back)
+    GlobalState snapshot(Application app){
+        if(app.getGlobalState().getTrail() == null)
+            return app.getGlobalState();
+        return this.fork(app).getGlobalState();
+    }
+
+    void reportFailure(AnalysisReport report, Action action, Branching branching){
+        report.setFailedAction(action);
+        report.setFailException(branching.getFailException());
+        report.setGlobalState(branching.getFailedGS());
+    }
+
+    //reports failedSequence with the failure of its step (failure: the report of such step), unless a
+    //failing trace was already reported (the failure then goes with the trace it belongs to)
+    void reportFailedTrace(AnalysisReport failure, Sequence failedSequence){
+        if(this.report.getFailedSequence() != null)
+            return;
+        this.report.setFailedSequence(failedSequence);
+        this.report.setFailedAction(failure.getFailedAction());
+        this.report.setFailException(failure.getFailException());
+        this.report.setGlobalState(failure.getGlobalState());
+    }
+
+    //#endregion
+
+
+    //#region SEARCH STACK
+
+    // the analyses are depth-first searches run on an explicit stack of frames (instead of recursing
+    // once per action), hence their depth is bounded by the heap only
+    // a frame is resumed with the verdict of its last child (null the first time), and it either starts
+    // a new child (returning its verdict, or null if the child pushed its own frame) or pops itself
+    // (returning its own verdict to its parent)
+    private abstract static class Frame {
+        abstract Boolean resume(Deque<Frame> stack, Boolean childVerdict);
+    }
+
+    //resumes the frames on top of stack until it is empty (verdict is the one of the child of the top frame)
+    private static boolean run(Deque<Frame> stack, Boolean verdict){
+        while(!stack.isEmpty())
+            verdict = stack.peek().resume(stack, verdict);
+        return verdict;
+    }
+
+    //#endregion
+
+
+    //#region SEQUENCE ANALYSIS
+
+    //trace is the (read-only) sequence under analysis, cursor the position of the next action to execute,
+    //hence the fault branches share the same trace and move their own cursor
+    private boolean isValidSequence(Application app, Action[] trace, int cursor) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        return run(stack, this.enterSequence(stack, app, trace, cursor));
+    }
+
+    //executes the action at cursor on app: the verdict of the suffix, or null if its frame was pushed on stack
+    private Boolean enterSequence(Deque<Frame> stack, Application app, Action[] trace, int cursor) {
+        //base case
+        if(cursor == trace.length){
+            this.monitor.exploreLinearization();
+            return true;
+        }
+
+        //the same suffix was already analysed starting from the same global state
+        //(the key is computed before exploring, as the exploration modifies app)
+        TranspositionTable.Key key = this.transpositionTable.keyOf(app.getGlobalState(), cursor);
+        Boolean knownVerdict = this.transpositionTable.lookup(key);
+        if(knownVerdict != null)
+            return knownVerdict;
+        //a frame for each executed action
+        this.monitor.exploreState(stack.size());
+
+        Action action = trace[cursor];
+        Branching branching = this.branch(app, action);
+        if(branching.isFailed()){
+            this.reportFailure(this.report, action, branching);
+            this.transpositionTable.record(key, false);
+            return false;
+        }
+
+        stack.push(new SequenceFrame(app, trace, cursor, key, action, branching.getBranches()));
+        return null;
+    }
+
+    //each branch of the action at cursor goes on from its own global state
+    private class SequenceFrame extends Frame {
+        private final Application app;
+        private final Action[] trace;
+        private final int cursor;
+        private final TranspositionTable.Key key;
+        private final Action action;
+        private final List<Branching.Branch> branches;
+        //next branch to enter, and the point of the trail of app to roll back to after the current one
+        private int nextBranch;
+        private int mark;
+
+        private SequenceFrame(Application app, Action[] trace, int cursor, TranspositionTable.Key key, Action action, List<Branching.Branch> branches){
+            this.app = app;
+            this.trace = trace;
+            this.cursor = cursor;
+            this.key = key;
+            this.action = action;
+            this.branches = branches;
+        }
+
+        @Override
+        Boolean resume(Deque<Frame> stack, Boolean childVerdict){
+            if(childVerdict != null){
+                if(!childVerdict)
+                    return this.finish(stack, false);
+                Analyzer.this.rollback(this.app, this.mark);
+            }
+            if(this.nextBranch == this.branches.size())
+                return this.finish(stack, true);
+
+            Branching.Branch branch = this.branches.get(this.nextBranch++);
+            this.mark = Analyzer.this.mark(this.app);
+
+            Application branchApp;
+            try {
+                branchApp = Analyzer.this.enterBranch(this.app, branch, this.nextBranch == this.branches.size());
+            } catch (Exception e) {
+                Analyzer.this.reportFailure(Analyzer.this.report, this.action, Branching.failure(e, Analyzer.this.snapshot(this.app)));
+                return this.finish(stack, false);
+            }
+
+            int nextCursor = branch.hasConsumedAction() ? this.cursor + 1 : this.cursor;
+            return Analyzer.this.enterSequence(stack, branchApp, this.trace, nextCursor);
+        }
+
+        private Boolean finish(Deque<Frame> stack, boolean verdict){
+            Analyzer.this.transpositionTable.record(this.key, verdict);
+            stack.pop();
+            return verdict;
+        }
+    }
+
+    //#endregion
+
 
     //#region PLAN ANALYSIS
-    
-    private boolean isValidPlan(Application app, Plan plan, Sequence traceFragment, Sequence remainingActions, boolean weakValidity) {
-        // If there are no remainingActions, check the validity of the trace denoted by traceFragment
-        if(remainingActions.getActions().isEmpty()) {
-            boolean validTrace = isValidSequence(app.clone(), traceFragment.clone());
-            // Case: Weakly valid plan analysis (found valid trace, return true)
-            if(validTrace && weakValidity)
+
+    // the plan is explored by extending a trace fragment one action at a time, and each action
+    // is executed once on the global states reached by the fragment (instead of executing again
+    // every trace from the initial global state)
+    // remainingActions is the frontier of the actions of the compiled plan still to be executed
+    // sleepSet contains the ids of the actions whose addition to traceFragment is already covered by an
+    // equivalent trace (always empty if partial order reduction is disabled)
+
+    // valid plan: all the traces are valid, hence each branch of a fault can pick
+    // its own way to go on (retryAction is the opEnd that a branch has to execute again)
+    // traceFragment and remainingActions are changed in place and restored before returning
+    private boolean isValidPlan(Application app, Sequence traceFragment, CompiledPlan.Frontier remainingActions, Action retryAction, BitSet sleepSet) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        return run(stack, this.enterConfig(stack, app, traceFragment, remainingActions, retryAction, sleepSet));
+    }
+
+    //the verdict of the configuration, or null if its frame was pushed on stack
+    private Boolean enterConfig(Deque<Frame> stack, Application app, Sequence traceFragment, CompiledPlan.Frontier remainingActions, Action retryAction, BitSet sleepSet) {
+        // If there are no remainingActions, the trace denoted by traceFragment is valid
+        if(retryAction == null && remainingActions.isEmpty()){
+            this.monitor.exploreLinearization();
+            return true;
+        }
+
+        // The same remaining actions were already analysed starting from the same global state
+        // (with a sleep set included in sleepSet)
+        TranspositionTable.Key key = this.transpositionTable.keyOf(
+            app.getGlobalState(),
+            Arrays.asList(remainingActions.getRemaining(), retryAction)
+        );
+        Boolean knownVerdict = this.transpositionTable.lookup(key, sleepSet);
+        if(knownVerdict != null)
+            return knownVerdict;
+        //two frames (configuration and step) for each executed action
+        this.monitor.exploreState(stack.size() / 2);
+
+        BitSet analysedSleepSet = this.transpositionTable.getSleepSet(key);
+        stack.push(new ConfigFrame(app, key, traceFragment, remainingActions, retryAction,
+            intersection(sleepSet, analysedSleepSet), this.skippedActions(remainingActions.getPlan(), sleepSet, analysedSleepSet)));
+        return null;
+    }
+
+    //executes action on app: false if it fails, or null if the frame of its branches was pushed on stack
+    private Boolean enterStep(Deque<Frame> stack, Application app, Sequence traceFragment, CompiledPlan.Frontier remainingActions, Action action, BitSet sleepSet) {
+        Branching branching = this.branch(app, action);
+        if(branching.isFailed()){
+            this.reportFailure(this.report, action, branching);
+            this.report.setFailedSequence(remainingActions.completeTrace(traceFragment));
+            return false;
+        }
+
+        stack.push(new StepFrame(app, traceFragment, remainingActions, action, branching.getBranches(), sleepSet));
+        return null;
+    }
+
+    // Expand traceFragment with any of the enabled remainingActions (or with the retryAction, if any)
+    // (skipping "a" if the traces starting with traceFragment+a are equivalent to already analysed ones)
+    private class ConfigFrame extends Frame {
+        private final Application app;
+        private final TranspositionTable.Key key;
+        private final Sequence traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final Action retryAction;
+        private final BitSet sleepSet;
+        private final BitSet skipped;
+        private BitSet explored;
+        //action being explored and the next one to explore (-1 if none), and the point of the trail of app to roll back to
+        private int choice;
+        private int nextChoice;
+        private int mark;
+
+        private ConfigFrame(Application app, TranspositionTable.Key key, Sequence traceFragment, CompiledPlan.Frontier remainingActions, Action retryAction, BitSet sleepSet, BitSet skipped){
+            this.app = app;
+            this.key = key;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.retryAction = retryAction;
+            this.sleepSet = sleepSet;
+            this.skipped = skipped;
+        }
+
+        @Override
+        Boolean resume(Deque<Frame> stack, Boolean childVerdict){
+            if(this.retryAction != null){
+                if(childVerdict == null)
+                    return Analyzer.this.enterStep(stack, this.app, this.traceFragment, this.remainingActions, this.retryAction, this.sleepSet);
+                return this.finish(stack, childVerdict);
+            }
+
+            if(childVerdict == null){
+                this.explored = (BitSet) this.sleepSet.clone();
+                this.choice = Analyzer.this.nextChoice(this.remainingActions, this.skipped, 0);
+            }
+            else{
+                this.traceFragment.getActions().remove(this.traceFragment.getActions().size() - 1);
+                this.remainingActions.undo(this.choice);
+                // Violation to validity constraints, return false
+                if(!childVerdict)
+                    return this.finish(stack, false);
+                Analyzer.this.rollback(this.app, this.mark);
+                this.explored.set(this.choice);
+                this.choice = this.nextChoice;
+            }
+            if(this.choice < 0)
+                return this.finish(stack, true);
+
+            this.nextChoice = Analyzer.this.nextChoice(this.remainingActions, this.skipped, this.choice + 1);
+            Action action = this.remainingActions.getPlan().getAction(this.choice);
+            this.remainingActions.execute(this.choice);
+            this.traceFragment.getActions().add(action);
+
+            this.mark = Analyzer.this.mark(this.app);
+            Application stepApp = Analyzer.this.fork(this.app, this.nextChoice < 0);
+            BitSet stepSleepSet = Analyzer.this.sleepSetAfter(this.remainingActions.getPlan(), this.choice, this.explored, Collections.singletonList(this.app));
+            return Analyzer.this.enterStep(stack, stepApp, this.traceFragment, this.remainingActions, action, stepSleepSet);
+        }
+
+        private Boolean finish(Deque<Frame> stack, boolean verdict){
+            Analyzer.this.transpositionTable.record(this.key, verdict, this.sleepSet);
+            stack.pop();
+            return verdict;
+        }
+    }
+
+    // each branch of the executed action goes on from its own global state
+    private class StepFrame extends Frame {
+        private final Application app;
+        private final Sequence traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final Action action;
+        private final List<Branching.Branch> branches;
+        private final BitSet sleepSet;
+        //next branch to enter, and the point of the trail of app to roll back to after the current one
+        private int nextBranch;
+        private int mark;
+
+        private StepFrame(Application app, Sequence traceFragment, CompiledPlan.Frontier remainingActions, Action action, List<Branching.Branch> branches, BitSet sleepSet){
+            this.app = app;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.action = action;
+            this.branches = branches;
+            this.sleepSet = sleepSet;
+        }
+
+        @Override
+        Boolean resume(Deque<Frame> stack, Boolean childVerdict){
+            if(childVerdict != null){
+                if(!childVerdict){
+                    stack.pop();
+                    return false;
+                }
+                Analyzer.this.rollback(this.app, this.mark);
+            }
+            if(this.nextBranch == this.branches.size()){
+                stack.pop();
                 return true;
-            // Case: Valid plan analysis (violation to validity constraints, return false)
-            if(!validTrace && !weakValidity) {
-                this.report.setFailedSequence(traceFragment.clone());
+            }
+
+            Branching.Branch branch = this.branches.get(this.nextBranch++);
+            this.mark = Analyzer.this.mark(this.app);
+
+            Application branchApp;
+            try {
+                branchApp = Analyzer.this.enterBranch(this.app, branch, this.nextBranch == this.branches.size());
+            } catch (Exception e) {
+                Analyzer.this.reportFailure(Analyzer.this.report, this.action, Branching.failure(e, Analyzer.this.snapshot(this.app)));
+                Analyzer.this.report.setFailedSequence(this.remainingActions.completeTrace(this.traceFragment));
+                stack.pop();
                 return false;
             }
+
+            Action retryAction = branch.hasConsumedAction() ? null : this.action;
+            return Analyzer.this.enterConfig(stack, branchApp, this.traceFragment, this.remainingActions, retryAction, this.sleepSet);
         }
-        
-        // Otherwise, expand traceFragment with any of the remainingActions (if possible) and recur
-        for(int i=0; i<remainingActions.getActions().size(); i++) {
-            // Extract action "a" to consider and compute "new" remainingActions
-            Sequence newRemainingActions = remainingActions.clone();
-            Action a = newRemainingActions.getActions().remove(i);
-            // If "a" can be added before the other remaining actions
-            boolean orderPreservingAction = true;
-            for(Action remaining : newRemainingActions.getActions()) {
-                if(plan.getPartialOrder().get(remaining).contains(a)) {
-                    orderPreservingAction = false;
-                    break;
+    }
+
+    // weakly valid plan: there is a trace whose branches are all valid, hence the branches of
+    // the faults go on together (frontier contains the global states reached by traceFragment)
+    // traceFragment and remainingActions are changed in place and restored before returning
+    private boolean isWeaklyValidPlan(List<Application> frontier, Sequence traceFragment, CompiledPlan.Frontier remainingActions, BitSet sleepSet) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        return run(stack, this.enterWeakConfig(stack, frontier, traceFragment, remainingActions, sleepSet));
+    }
+
+    //the verdict of the configuration, or null if its frame was pushed on stack
+    private Boolean enterWeakConfig(Deque<Frame> stack, List<Application> frontier, Sequence traceFragment, CompiledPlan.Frontier remainingActions, BitSet sleepSet) {
+        // If there are no remainingActions (or no branches to check) traceFragment denotes a valid trace
+        if(frontier.isEmpty() || remainingActions.isEmpty()){
+            this.monitor.exploreLinearization();
+            return true;
+        }
+
+        // The same remaining actions were already found to fail from the same global states
+        // (with a sleep set included in sleepSet)
+        List<GlobalState> frontierStates = new ArrayList<>();
+        for(Application app : frontier)
+            frontierStates.add(app.getGlobalState());
+        TranspositionTable.Key key = this.transpositionTable.keyOf(frontierStates, remainingActions.getRemaining());
+        if(this.transpositionTable.lookup(key, sleepSet) != null)
+            return false;
+        //a frame for each executed action
+        this.monitor.exploreState(stack.size());
+
+        BitSet analysedSleepSet = this.transpositionTable.getSleepSet(key);
+        stack.push(new WeakConfigFrame(frontier, key, traceFragment, remainingActions,
+            intersection(sleepSet, analysedSleepSet), this.skippedActions(remainingActions.getPlan(), sleepSet, analysedSleepSet)));
+        return null;
+    }
+
+    // Expand traceFragment with any of the enabled remainingActions
+    // (skipping "a" if the traces starting with traceFragment+a are equivalent to already analysed ones)
+    private class WeakConfigFrame extends Frame {
+        private final List<Application> frontier;
+        private final TranspositionTable.Key key;
+        private final Sequence traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final BitSet sleepSet;
+        private final BitSet skipped;
+        private final BitSet explored;
+        //action being explored
+        private int choice;
+
+        private WeakConfigFrame(List<Application> frontier, TranspositionTable.Key key, Sequence traceFragment, CompiledPlan.Frontier remainingActions, BitSet sleepSet, BitSet skipped){
+            this.frontier = frontier;
+            this.key = key;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.sleepSet = sleepSet;
+            this.skipped = skipped;
+            this.explored = (BitSet) sleepSet.clone();
+        }
+
+        @Override
+        Boolean resume(Deque<Frame> stack, Boolean childVerdict){
+            if(childVerdict == null)
+                this.choice = Analyzer.this.nextChoice(this.remainingActions, this.skipped, 0);
+            else{
+                this.undoChoice();
+                // Found valid trace, return true
+                if(childVerdict){
+                    stack.pop();
+                    return true;
                 }
+                this.explored.set(this.choice);
+                this.choice = Analyzer.this.nextChoice(this.remainingActions, this.skipped, this.choice + 1);
             }
-            if(orderPreservingAction) {
-                // Concat "a" to "new" traceFragment
-                Sequence newTraceFragment = traceFragment.clone();
-                newTraceFragment.getActions().add(a);
-                // Recur with new traceFragment and new remainingActions
-                boolean validPlan = isValidPlan(app,plan,newTraceFragment,newRemainingActions,weakValidity);
-                // Case: Weakly valid plan analysis (found valid trace, return true)
-                if(validPlan && weakValidity)
-                    return true;
-                // Case: Valid plan analysis (violation to validity constraints, return false)
-                if(!validPlan && !weakValidity) {
-                    return false;
+
+            while(this.choice >= 0){
+                Action action = this.remainingActions.getPlan().getAction(this.choice);
+                this.remainingActions.execute(this.choice);
+                this.traceFragment.getActions().add(action);
+
+                BitSet newSleepSet = Analyzer.this.sleepSetAfter(this.remainingActions.getPlan(), this.choice, this.explored, this.frontier);
+                AnalysisReport failure = new AnalysisReport();
+                List<Application> newFrontier = Analyzer.this.advance(Analyzer.this.cloneApps(this.frontier), action, failure);
+                if(newFrontier != null){
+                    return Analyzer.this.enterWeakConfig(stack, newFrontier, this.traceFragment, this.remainingActions, newSleepSet);
+                }
+
+                // Any trace starting with traceFragment+a fails (the first one is reported)
+                if(Analyzer.this.report.getFailedSequence() == null)
+                    Analyzer.this.reportFailedTrace(failure, this.remainingActions.completeTrace(this.traceFragment));
+                this.undoChoice();
+                this.explored.set(this.choice);
+                this.choice = Analyzer.this.nextChoice(this.remainingActions, this.skipped, this.choice + 1);
+            }
+
+            // Plan assumed to not be weakly valid
+            Analyzer.this.transpositionTable.record(this.key, false, this.sleepSet);
+            stack.pop();
+            return false;
+        }
+
+        private void undoChoice(){
+            this.traceFragment.getActions().remove(this.traceFragment.getActions().size() - 1);
+            this.remainingActions.undo(this.choice);
+        }
+    }
+
+    // executes action on all the global states of frontier (and again on the branches that
+    // resolved the fault of a failed opEnd), null if it fails on any of them (the failure goes to report)
+    List<Application> advance(List<Application> frontier, Action action, AnalysisReport report) {
+        List<Application> newFrontier = new ArrayList<>();
+        //branches reaching the same global state go on in the very same way
+        Set<TranspositionTable.Key> reached = new HashSet<>();
+
+        Deque<Application> toExecute = new ArrayDeque<>(frontier);
+
+        while(!toExecute.isEmpty()){
+            Application app = toExecute.pop();
+            Branching branching = this.branch(app, action);
+            if(branching.isFailed()){
+                this.reportFailure(report, action, branching);
+                return null;
+            }
+
+            List<Branching.Branch> branches = branching.getBranches();
+            for(int i=0; i<branches.size(); i++){
+                Branching.Branch branch = branches.get(i);
+
+                Application branchApp;
+                try {
+                    branchApp = this.enterBranch(app, branch, i == branches.size() - 1);
+                } catch (Exception e) {
+                    this.reportFailure(report, action, Branching.failure(e, this.snapshot(app)));
+                    return null;
                 }
+
+                if(!branch.hasConsumedAction())
+                    toExecute.push(branchApp);
+                else if(reached.add(this.transpositionTable.keyOf(branchApp.getGlobalState(), action)))
+                    newFrontier.add(branchApp);
             }
         }
+        return newFrontier;
+    }
 
-        // Case: Weakly valid plan analysis (plan assumed to not be weakly valid)
-        if(weakValidity) return false;
-        // Case: Valid plan analysis (plan assumed to be valid)
-        return true;
+    // first enabled action not lower than from that is not skipped (-1 if none)
+    int nextChoice(CompiledPlan.Frontier remainingActions, BitSet skipped, int from) {
+        int a = remainingActions.nextEnabled(from);
+        while(a >= 0 && skipped.get(a))
+            a = remainingActions.nextEnabled(a + 1);
+        return a;
+    }
+
+    // actions not to choose from a pair reached with sleepSet, and already analysed with analysedSleepSet
+    // (null if never analysed): the traces starting with the actions that were not asleep then are
+    // already analysed, hence only the actions asleep then and awake now are left
+    BitSet skippedActions(CompiledPlan plan, BitSet sleepSet, BitSet analysedSleepSet) {
+        if(analysedSleepSet == null)
+            return sleepSet;
+        BitSet skipped = new BitSet();
+        skipped.set(0, plan.size());
+        skipped.andNot(analysedSleepSet);
+        skipped.or(sleepSet);
+        return skipped;
+    }
+
+    // sleep set of a pair reached with sleepSet, and already analysed with analysedSleepSet (null if never
+    // analysed): its verdict holds for the traces analysed now or then
+    static BitSet intersection(BitSet sleepSet, BitSet analysedSleepSet) {
+        if(analysedSleepSet == null)
+            return sleepSet;
+        BitSet intersection = (BitSet) sleepSet.clone();
+        intersection.and(analysedSleepSet);
+        return intersection;
+    }
+
+    // actions that were already explored stay asleep after "a" if they are independent from "a"
+    // in all the applications reached by the analysed trace fragment (which are not changed)
+    BitSet sleepSetAfter(CompiledPlan plan, int a, BitSet explored, Collection<Application> apps) {
+        BitSet newSleepSet = new BitSet();
+        if(!this.partialOrderReduction)
+            return newSleepSet;
+        for(int b = explored.nextSetBit(0); b >= 0; b = explored.nextSetBit(b + 1)) {
+            boolean independent = true;
+            for(Iterator<Application> it = apps.iterator(); independent && it.hasNext(); )
+                independent = this.independence.areIndependent(it.next(), plan.getAction(a), plan.getAction(b));
+            if(independent)
+                newSleepSet.set(b);
+        }
+        return newSleepSet;
     }
 
     //#endregion
@@ -0,0 +1,87 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.GlobalState;
+
+/**
+ * outcome of the execution of an action during the analysis
+    * either the execution failed (failed action, exception and global state for the report)
+    * or it produced the branches to keep exploring: the one where no pending fault is handled and
+      one for each pending fault (resolved or handled)
+    * the branches are not applied yet: each of them is entered from the global state reached by
+      the action (see Analyzer.enterBranch)
+    * a branch that did not consume the action (fault resolved after a failed opEnd) has to
+      execute the same action again
+    * no branches means that nothing else has to be checked after the action
+ */
+
+public class Branching {
+
+    private final boolean failed;
+    private final Exception failException;
+    private final GlobalState failedGS;
+
+    private final List<Branch> branches;
+
+    private Branching(boolean failed, Exception failException, GlobalState failedGS){
+        this.failed = failed;
+        this.failException = failException;
+        this.failedGS = failedGS;
+        this.branches = new ArrayList<>();
+    }
+
+    public static Branching failure(Exception failException, GlobalState failedGS){
+        return new Branching(true, failException, failedGS);
+    }
+
+    public static Branching success(){
+        return new Branching(false, null, null);
+    }
+
+    /**
+     * @param fault pending fault to resolve or handle (null for the branch where no fault is handled)
+     * @param resolvableFault true if the fault is resolved, false if it is handled
+     * @param consumedAction false if the action has to be executed again
+     */
+    public void addBranch(Fault fault, boolean resolvableFault, boolean consumedAction){
+        this.branches.add(new Branch(fault, resolvableFault, consumedAction));
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+    public Exception getFailException() {
+        return failException;
+    }
+    public GlobalState getFailedGS() {
+        return failedGS;
+    }
+    public List<Branch> getBranches() {
+        return branches;
+    }
+
+    public static class Branch {
+        private final Fault fault;
+        private final boolean resolvableFault;
+        private final boolean consumedAction;
+
+        private Branch(Fault fault, boolean resolvableFault, boolean consumedAction){
+            this.fault = fault;
+            this.resolvableFault = resolvableFault;
+            this.consumedAction = consumedAction;
+        }
+
+        public Fault getFault() {
+            return fault;
+        }
+        public boolean isResolvableFault() {
+            return resolvableFault;
+        }
+        public boolean hasConsumedAction() {
+            return consumedAction;
+        }
+    }
+}
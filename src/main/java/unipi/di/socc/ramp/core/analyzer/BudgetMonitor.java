@@ -0,0 +1,83 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+/**
+ * counts what an analysis explores (in its AnalysisMetrics), and stops it when it runs out of its
+ * budget (see AnalysisBudget)
+    * the analyses call exploreState for each configuration they explore (i.e., whose verdict is not
+      memoized) with its depth, and exploreLinearization for each trace they complete
+    * once a limit is reached, exploreState throws Exhausted (and so does it afterwards), which the
+      analyses let through up to Analyzer
+    * the time is checked at each state, the used heap every MEMORY_CHECK_PERIOD states
+    * a monitor is shared by all the threads of a parallel analysis
+ */
+
+class BudgetMonitor {
+
+    private static final int MEMORY_CHECK_PERIOD = 1024;
+
+    private final AnalysisBudget budget;
+    //System.nanoTime() at which the time budget runs out (meaningful only if there is a time limit)
+    private final long deadline;
+
+    private final AnalysisMetrics metrics;
+    //limit reached by the analysis (null if none)
+    private volatile AnalysisBudget.Limit exhaustedLimit;
+
+    BudgetMonitor(AnalysisBudget budget, AnalysisMetrics metrics){
+        this.budget = budget;
+        this.deadline = System.nanoTime() + budget.getMaxMillis() * 1_000_000;
+        this.metrics = metrics;
+    }
+
+    AnalysisMetrics getMetrics(){
+        return this.metrics;
+    }
+
+    AnalysisBudget.Limit getExhaustedLimit(){
+        return this.exhaustedLimit;
+    }
+
+    //a configuration reached by executing depth actions is going to be explored (throws Exhausted if the budget ran out)
+    void exploreState(int depth){
+        if(this.exhaustedLimit == null){
+            if(this.budget.getMaxMillis() > 0 && System.nanoTime() - this.deadline > 0)
+                this.exhaustedLimit = AnalysisBudget.Limit.TIME;
+            else if(this.budget.getMaxHeapBytes() > 0 && this.metrics.exploredStates.get() % MEMORY_CHECK_PERIOD == 0 && usedHeap() > this.budget.getMaxHeapBytes())
+                this.exhaustedLimit = AnalysisBudget.Limit.MEMORY;
+        }
+        if(this.exhaustedLimit == null){
+            //counted only within the limit (atomically, as the threads of a parallel analysis share the count)
+            long maxStates = this.budget.getMaxStates();
+            long states = this.metrics.exploredStates.getAndUpdate(count -> maxStates <= 0 || count < maxStates ? count + 1 : count);
+            if(maxStates > 0 && states >= maxStates)
+                this.exhaustedLimit = AnalysisBudget.Limit.STATES;
+        }
+        if(this.exhaustedLimit != null)
+            throw new Exhausted(this.exhaustedLimit);
+        this.metrics.recordDepth(depth);
+    }
+
+    //a trace was completed
+    void exploreLinearization(){
+        this.metrics.exploredLinearizations.incrementAndGet();
+    }
+
+    private static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //thrown to stop the analysis (without a stack trace, as it is not an error)
+    static class Exhausted extends RuntimeException {
+        private final AnalysisBudget.Limit limit;
+
+        Exhausted(AnalysisBudget.Limit limit){
+            super(limit + " budget exhausted", null, false, false);
+            this.limit = limit;
+        }
+
+        AnalysisBudget.Limit getLimit(){
+            return this.limit;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+
+/**
+ * compiled (read-only) form of a plan, on which its linearizations are enumerated without allocating
+    * the actions are numbered by their position in the plan
+    * the partial order is stored as per-action bitsets of predecessors (the actions that have to be
+      executed before it) and arrays of successors
+    * the actions still to be executed are tracked by a Frontier, which keeps the enabled ones (i.e.,
+      those whose predecessors were all executed) incrementally, as in Kahn's topological sort
+ */
+
+public class CompiledPlan {
+
+    //id -> action
+    private final Action[] actions;
+    //[id] -> ids of the actions that have to be executed before the action
+    private final BitSet[] predecessors;
+    //[id] -> ids of the actions that have to be executed after the action
+    private final int[][] successors;
+
+    public CompiledPlan(Plan plan){
+        List<Action> planActions = plan.getActions();
+        this.actions = planActions.toArray(new Action[0]);
+
+        //as the partial order of the plan: y follows x if y is in the list of x (an action never follows itself)
+        this.predecessors = new BitSet[this.actions.length];
+        for(int id = 0; id < this.actions.length; id++)
+            this.predecessors[id] = new BitSet(this.actions.length);
+        //action -> positions of the actions equal to it
+        Map<Action, List<Integer>> positions = new HashMap<>();
+        for(int id = 0; id < this.actions.length; id++)
+            positions.computeIfAbsent(this.actions[id], action -> new ArrayList<>()).add(id);
+
+        this.successors = new int[this.actions.length][];
+        for(int id = 0; id < this.actions.length; id++){
+            List<Action> after = plan.getPartialOrder().get(this.actions[id]);
+            BitSet idSuccessors = new BitSet(this.actions.length);
+            for(Action afterAction : after != null ? after : new ArrayList<Action>()){
+                for(int succID : positions.getOrDefault(afterAction, new ArrayList<>())){
+                    if(this.actions[succID] != this.actions[id]){
+                        this.predecessors[succID].set(id);
+                        idSuccessors.set(succID);
+                    }
+                }
+            }
+            this.successors[id] = idSuccessors.stream().toArray();
+        }
+    }
+
+    public int size(){
+        return this.actions.length;
+    }
+
+    public Action getAction(int id){
+        return this.actions[id];
+    }
+
+    /**
+     * @return the ids of the actions that have to be executed before the action id
+     */
+    public BitSet getPredecessors(int id){
+        return this.predecessors[id];
+    }
+
+    /**
+     * @return a frontier where no action was executed yet
+     */
+    public Frontier newFrontier(){
+        return new Frontier(this);
+    }
+
+    /**
+     * estimates the number of linearizations of the plan (Knuth's estimator): each probe picks a random
+     * enabled action until none remains, and it estimates the product of the numbers of enabled actions it met
+     * @param probes number of random linearizations to average
+     * @param random source of the choices of the probes
+     * @return the average estimate of the probes (exact if the plan is totally ordered)
+     */
+    public double estimateLinearizations(int probes, Random random){
+        double estimate = 0;
+        for(int probe = 0; probe < probes; probe++){
+            Frontier frontier = this.newFrontier();
+            double product = 1;
+            while(!frontier.isEmpty()){
+                int enabled = frontier.enabled.cardinality();
+                product *= enabled;
+                if(enabled == 0)
+                    break;
+
+                //the (random + 1)-th enabled action
+                int id = frontier.nextEnabled(0);
+                for(int skip = random.nextInt(enabled); skip > 0; skip--)
+                    id = frontier.nextEnabled(id + 1);
+                frontier.execute(id);
+            }
+            estimate += product / probes;
+        }
+        return estimate;
+    }
+
+    /**
+     * actions of a plan still to be executed, among which the enabled ones
+        * execute and undo change the frontier in place, in O(successors) (undos must come in reverse order)
+     */
+    public static class Frontier {
+        private final CompiledPlan plan;
+        //ids of the actions still to be executed
+        private final BitSet remaining;
+        //ids of the remaining actions whose predecessors were all executed
+        private final BitSet enabled;
+        //[id] -> number of remaining predecessors of the action
+        private final int[] pendingPredecessors;
+
+        private Frontier(CompiledPlan plan){
+            this.plan = plan;
+            this.remaining = new BitSet(plan.size());
+            this.remaining.set(0, plan.size());
+            this.enabled = new BitSet(plan.size());
+            this.pendingPredecessors = new int[plan.size()];
+            for(int id = 0; id < plan.size(); id++){
+                this.pendingPredecessors[id] = plan.predecessors[id].cardinality();
+                if(this.pendingPredecessors[id] == 0)
+                    this.enabled.set(id);
+            }
+        }
+
+        private Frontier(Frontier frontier){
+            this.plan = frontier.plan;
+            this.remaining = (BitSet) frontier.remaining.clone();
+            this.enabled = (BitSet) frontier.enabled.clone();
+            this.pendingPredecessors = frontier.pendingPredecessors.clone();
+        }
+
+        public CompiledPlan getPlan(){
+            return this.plan;
+        }
+
+        public boolean isEmpty(){
+            return this.remaining.isEmpty();
+        }
+
+        public boolean isEnabled(int id){
+            return this.enabled.get(id);
+        }
+
+        /**
+         * @return the lowest id of an enabled action not lower than from (-1 if none)
+         */
+        public int nextEnabled(int from){
+            return this.enabled.nextSetBit(from);
+        }
+
+        /**
+         * @return a copy of the ids of the remaining actions (e.g., to be used as a key)
+         */
+        public BitSet getRemaining(){
+            return (BitSet) this.remaining.clone();
+        }
+
+        /**
+         * @param id remaining action to execute (it needs not to be enabled)
+         */
+        public void execute(int id){
+            this.remaining.clear(id);
+            this.enabled.clear(id);
+            for(int succID : this.plan.successors[id]){
+                if(--this.pendingPredecessors[succID] == 0 && this.remaining.get(succID))
+                    this.enabled.set(succID);
+            }
+        }
+
+        /**
+         * @param id last executed action, which becomes remaining again
+         */
+        public void undo(int id){
+            for(int succID : this.plan.successors[id]){
+                if(this.pendingPredecessors[succID]++ == 0)
+                    this.enabled.clear(succID);
+            }
+            this.remaining.set(id);
+            if(this.pendingPredecessors[id] == 0)
+                this.enabled.set(id);
+        }
+
+        /**
+         * @param traceFragment actions already executed
+         * @return traceFragment followed by the remaining actions, each time picking the first enabled one
+         *   (or the first remaining one, if none is enabled)
+         */
+        public Sequence completeTrace(Sequence traceFragment){
+            Sequence trace = traceFragment.clone();
+            Frontier toAdd = this.copy();
+            while(!toAdd.isEmpty()){
+                int next = toAdd.nextEnabled(0);
+                if(next < 0)
+                    next = toAdd.remaining.nextSetBit(0);
+                toAdd.execute(next);
+                trace.getActions().add(this.plan.getAction(next));
+            }
+            return trace;
+        }
+
+        public Frontier copy(){
+            return new Frontier(this);
+        }
+    }
+}
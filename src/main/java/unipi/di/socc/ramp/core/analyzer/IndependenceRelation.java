@@ -0,0 +1,92 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import unipi.di.socc.ramp.core.analyzer.actions.*;
+import unipi.di.socc.ramp.core.model.Application;
+
+/**
+ * independence relation among the actions of a plan, used for partial order reduction
+    * two actions are independent in a global state if swapping them (when they are the next two
+      actions of a trace reaching the global state) cannot change the validity of the trace, hence
+      only one of the two orders has to be analysed from that global state
+    * a and b are independent in a global state if they are about different instances, pi is
+      deterministic and executing a then b, or b then a, from the global state
+        * does not fail (not even with a failed opEnd),
+        * leaves no pending faults and no broken instances after the first action (hence the
+          analysis cannot handle a fault in between, and the first action has a single branch)
+        * reaches the same global state (hence the second action has the same branches)
+    * the relation depends on the global state, as an action can be swapped with another only as
+      long as none of them causes faults (e.g. stopping a server faults the clients bound to it,
+      if any), and as the servers chosen by pi depend on the instances offering the capabilities
+    * the two orders are executed on copies of the global state (not counted in the metrics of
+      the analysis)
+ */
+
+public class IndependenceRelation {
+
+    //action -> id of the instance it is about (for the actions of the plan)
+    private final Map<Action, String> instances;
+
+    public IndependenceRelation(List<Action> actions){
+        this.instances = new HashMap<>();
+        for(Action action : actions){
+            String instanceID = instanceOf(action);
+            if(instanceID != null)
+                this.instances.put(action, instanceID);
+        }
+    }
+
+    /**
+     * @param app application reached by the analysis, where both a and b can be executed next
+     *   (it is not changed)
+     * @return true if a and b can be swapped in app without changing the validity of the traces
+     */
+    public boolean areIndependent(Application app, Action a, Action b){
+        String instanceA = this.instances.get(a);
+        String instanceB = this.instances.get(b);
+
+        //unknown actions, or actions on the same instance
+        if(instanceA == null || instanceB == null || instanceA.equals(instanceB))
+            return false;
+        //the faults are not branched on if pi is not deterministic (nor are the servers it chooses)
+        if(!app.isPiDeterministic())
+            return false;
+
+        Application ab = executeBoth(app, a, b);
+        if(ab == null)
+            return false;
+        Application ba = executeBoth(app, b, a);
+        return ba != null && ab.getGlobalState().equals(ba.getGlobalState());
+    }
+
+    //copy of app after executing first and second, null if they fail or if first leaves faults to handle
+    private static Application executeBoth(Application app, Action first, Action second){
+        Application copy = app.fork();
+        try {
+            copy.execute(first);
+            if(!copy.getGlobalState().getPendingFaults().isEmpty() || !copy.getGlobalState().getBrokenInstances().isEmpty())
+                return null;
+            copy.execute(second);
+        } catch (Exception e) {
+            return null;
+        }
+        return copy;
+    }
+
+    private static String instanceOf(Action action){
+        if(action instanceof OpStart)
+            return ((OpStart) action).getInstanceID();
+        if(action instanceof OpEnd)
+            return ((OpEnd) action).getInstanceID();
+        if(action instanceof ScaleIn)
+            return ((ScaleIn) action).getInstanceID();
+        if(action instanceof ScaleOut)
+            return ((ScaleOut) action).getIDToAssign();
+        if(action instanceof ScaleOutC)
+            return ((ScaleOutC) action).getIDToAssign();
+        return null;
+    }
+}
@@ -0,0 +1,504 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.GlobalState;
+
+/**
+ * parallel version of the analysis of Analyzer, exploring the same tree with fork/join tasks
+    * sequences: a task for each branch of the faults (the fault branches after an action are
+      independent, as each of them works on its own copy of the application)
+    * --valid plans: a task for each configuration (global state, remaining actions, retry action, sleep set)
+      and one for each action executed on it
+    * --weakly-valid plans: a witness cancels all the tasks, while the counterexample to report is the
+      first trace failing in the sequential analysis (which is computed again at the end)
+    * in both sequences and --valid plans, each task has a path, i.e. the choices leading to it, and
+      a counterexample cancels the tasks whose path comes after its own, so that the reported
+      counterexample is the first one in the order of the sequential analysis
+    * only the verdicts that do not depend on cancelled tasks are memoized
+    * if the budget runs out, a counterexample (or witness) already found is still reported
+ */
+
+class ParallelAnalysis {
+
+    //tasks are run by the forking thread if the other threads have already enough work
+    private static final int SURPLUS_THRESHOLD = 2;
+
+    private final Analyzer analyzer;
+    private final TranspositionTable transpositionTable;
+    private final BudgetMonitor monitor;
+    private final int parallelism;
+
+    private CompiledPlan plan;
+    //first counterexample (w.r.t. the order of the paths) found by the analysis
+    private final AtomicReference<Failure> firstFailure;
+    //set when the weakly valid plan analysis finds a valid trace
+    private final AtomicBoolean witnessFound;
+
+    ParallelAnalysis(Analyzer analyzer, TranspositionTable transpositionTable, BudgetMonitor monitor, int parallelism){
+        this.analyzer = analyzer;
+        this.transpositionTable = transpositionTable;
+        this.monitor = monitor;
+        this.parallelism = parallelism;
+        this.firstFailure = new AtomicReference<>();
+        this.witnessFound = new AtomicBoolean();
+    }
+
+    boolean analyseSequence(Application app, Action[] trace){
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            pool.invoke(new SequenceTask(app, trace, 0, new int[0]));
+            return this.reportFirstFailure();
+        } catch (BudgetMonitor.Exhausted e) {
+            //a counterexample already found is a conclusive verdict
+            if(this.firstFailure.get() == null)
+                throw e;
+            return this.reportFirstFailure();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    boolean analysePlan(Application app, CompiledPlan plan, boolean weakValidity){
+        this.plan = plan;
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            if(weakValidity){
+                List<Application> frontier = new ArrayList<>();
+                frontier.add(app);
+                pool.invoke(new WeakConfigTask(frontier, TraceFragment.EMPTY, plan.newFrontier(), new BitSet()));
+
+                if(!this.witnessFound.get())
+                    this.reportFirstFailingTrace(app);
+                return this.witnessFound.get();
+            }
+
+            pool.invoke(new ConfigTask(app, TraceFragment.EMPTY, plan.newFrontier(), null, new BitSet(), new int[0]));
+            return this.reportFirstFailure();
+        } catch (BudgetMonitor.Exhausted e) {
+            //a witness (or a counterexample) already found is a conclusive verdict
+            if(weakValidity && this.witnessFound.get())
+                return true;
+            if(!weakValidity && this.firstFailure.get() != null)
+                return this.reportFirstFailure();
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //fills the report with the first counterexample, if any (returns false in such case)
+    private boolean reportFirstFailure(){
+        Failure failure = this.firstFailure.get();
+        if(failure == null)
+            return true;
+
+        this.analyzer.reportFailure(this.analyzer.getReport(), failure.action, failure.branching);
+        if(failure.trace != null)
+            this.analyzer.getReport().setFailedSequence(failure.trace);
+        return false;
+    }
+
+
+    //#region SEQUENCE ANALYSIS
+
+    //verdicts: true (valid), false (counterexample found), null (cancelled)
+    private class SequenceTask extends RecursiveTask<Boolean> {
+        private final Application app;
+        private final Action[] trace;
+        private final int cursor;
+        private final int[] path;
+
+        private SequenceTask(Application app, Action[] trace, int cursor, int[] path){
+            this.app = app;
+            this.trace = trace;
+            this.cursor = cursor;
+            this.path = path;
+        }
+
+        @Override
+        protected Boolean compute(){
+            if(this.cursor == this.trace.length){
+                monitor.exploreLinearization();
+                return true;
+            }
+            if(isPruned(this.path))
+                return null;
+
+            TranspositionTable.Key key = transpositionTable.keyOf(this.app.getGlobalState(), this.cursor);
+            //only valid configurations are recorded
+            if(transpositionTable.lookup(key) != null)
+                return true;
+            monitor.exploreState(this.path.length);
+
+            Action action = this.trace[this.cursor];
+            Branching branching = analyzer.branch(this.app, action);
+            if(branching.isFailed()){
+                //the failed sequence is the analysed one
+                offerFailure(new Failure(this.path, action, branching, null));
+                return false;
+            }
+
+            List<SequenceTask> branches = new ArrayList<>();
+            for(Branching.Branch branch : branching.getBranches()){
+                int[] branchPath = extend(this.path, branches.size());
+
+                Application branchApp;
+                try {
+                    branchApp = analyzer.enterBranch(this.app, branch, branches.size() == branching.getBranches().size() - 1);
+                } catch (Exception e) {
+                    //the branches before the failing one are still explored
+                    offerFailure(new Failure(branchPath, action, Branching.failure(e, this.app.getGlobalState()), null));
+                    allValid(branches);
+                    return false;
+                }
+
+                int nextCursor = branch.hasConsumedAction() ? this.cursor + 1 : this.cursor;
+                branches.add(new SequenceTask(branchApp, this.trace, nextCursor, branchPath));
+            }
+
+            Boolean verdict = allValid(branches);
+            if(Boolean.TRUE.equals(verdict))
+                transpositionTable.record(key, true);
+            return verdict;
+        }
+    }
+
+    //#endregion
+
+
+    //#region VALID PLAN ANALYSIS
+
+    //verdicts: true (valid), false (counterexample found), null (cancelled)
+    private class ConfigTask extends RecursiveTask<Boolean> {
+        private final Application app;
+        private final TraceFragment traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final Action retryAction;
+        private final BitSet sleepSet;
+        private final int[] path;
+
+        private ConfigTask(Application app, TraceFragment traceFragment, CompiledPlan.Frontier remainingActions, Action retryAction, BitSet sleepSet, int[] path){
+            this.app = app;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.retryAction = retryAction;
+            this.sleepSet = sleepSet;
+            this.path = path;
+        }
+
+        @Override
+        protected Boolean compute(){
+            if(this.retryAction == null && this.remainingActions.isEmpty()){
+                monitor.exploreLinearization();
+                return true;
+            }
+            if(isPruned(this.path))
+                return null;
+
+            TranspositionTable.Key key = transpositionTable.keyOf(
+                this.app.getGlobalState(),
+                Arrays.asList(this.remainingActions.getRemaining(), this.retryAction)
+            );
+            //only valid configurations are recorded (with a sleep set included in the one of the task)
+            if(transpositionTable.lookup(key, this.sleepSet) != null)
+                return true;
+            //the path has a choice for the configuration and one for the step of each executed action
+            monitor.exploreState(this.path.length / 2);
+
+            BitSet analysedSleepSet = transpositionTable.getSleepSet(key);
+            BitSet sleepSet = Analyzer.intersection(this.sleepSet, analysedSleepSet);
+            List<StepTask> steps = new ArrayList<>();
+            if(this.retryAction != null)
+                steps.add(new StepTask(this.app, this.traceFragment, this.remainingActions, this.retryAction, sleepSet, extend(this.path, 0)));
+            else{
+                //each step goes on with its own copy of the remaining actions (and shares the trace fragment)
+                BitSet skipped = analyzer.skippedActions(plan, this.sleepSet, analysedSleepSet);
+                BitSet explored = (BitSet) sleepSet.clone();
+                for(int a = analyzer.nextChoice(this.remainingActions, skipped, 0); a >= 0; a = analyzer.nextChoice(this.remainingActions, skipped, a + 1)){
+                    CompiledPlan.Frontier newRemainingActions = this.remainingActions.copy();
+                    newRemainingActions.execute(a);
+                    steps.add(new StepTask(
+                        analyzer.fork(this.app),
+                        this.traceFragment.append(plan.getAction(a)),
+                        newRemainingActions,
+                        plan.getAction(a),
+                        analyzer.sleepSetAfter(plan, a, explored, Collections.singletonList(this.app)),
+                        extend(this.path, steps.size())
+                    ));
+                    explored.set(a);
+                }
+            }
+
+            Boolean verdict = allValid(steps);
+            if(Boolean.TRUE.equals(verdict))
+                transpositionTable.record(key, true, sleepSet);
+            return verdict;
+        }
+    }
+
+    private class StepTask extends RecursiveTask<Boolean> {
+        private final Application app;
+        private final TraceFragment traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final Action action;
+        private final BitSet sleepSet;
+        private final int[] path;
+
+        private StepTask(Application app, TraceFragment traceFragment, CompiledPlan.Frontier remainingActions, Action action, BitSet sleepSet, int[] path){
+            this.app = app;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.action = action;
+            this.sleepSet = sleepSet;
+            this.path = path;
+        }
+
+        @Override
+        protected Boolean compute(){
+            if(isPruned(this.path))
+                return null;
+
+            Branching branching = analyzer.branch(this.app, this.action);
+            if(branching.isFailed()){
+                Sequence trace = this.remainingActions.completeTrace(this.traceFragment.toSequence());
+                offerFailure(new Failure(this.path, this.action, branching, trace));
+                return false;
+            }
+
+            List<ConfigTask> configs = new ArrayList<>();
+            for(Branching.Branch branch : branching.getBranches()){
+                int[] branchPath = extend(this.path, configs.size());
+
+                Application branchApp;
+                try {
+                    branchApp = analyzer.enterBranch(this.app, branch, configs.size() == branching.getBranches().size() - 1);
+                } catch (Exception e) {
+                    //the branches before the failing one are still explored
+                    Sequence trace = this.remainingActions.completeTrace(this.traceFragment.toSequence());
+                    offerFailure(new Failure(branchPath, this.action, Branching.failure(e, this.app.getGlobalState()), trace));
+                    allValid(configs);
+                    return false;
+                }
+
+                Action retryAction = branch.hasConsumedAction() ? null : this.action;
+                configs.add(new ConfigTask(branchApp, this.traceFragment, this.remainingActions, retryAction, this.sleepSet, branchPath));
+            }
+            return allValid(configs);
+        }
+    }
+
+    //false if any task found a counterexample, otherwise null if any task was cancelled, otherwise true
+    private Boolean allValid(List<? extends RecursiveTask<Boolean>> tasks){
+        if(tasks.size() < 2 || ForkJoinTask.getSurplusQueuedTaskCount() > SURPLUS_THRESHOLD){
+            for(RecursiveTask<Boolean> task : tasks){
+                Boolean verdict = task.invoke();
+                if(!Boolean.TRUE.equals(verdict))
+                    return verdict;
+            }
+            return true;
+        }
+
+        //forked in reverse order, so that the forking thread joins (and runs) them in order
+        for(int i = tasks.size() - 1; i > 0; i--)
+            tasks.get(i).fork();
+
+        Boolean verdict = tasks.get(0).invoke();
+        for(int i = 1; i < tasks.size(); i++){
+            Boolean taskVerdict = tasks.get(i).join();
+            if(Boolean.FALSE.equals(taskVerdict) || (taskVerdict == null && Boolean.TRUE.equals(verdict)))
+                verdict = taskVerdict;
+        }
+        return verdict;
+    }
+
+    private boolean isPruned(int[] path){
+        Failure failure = this.firstFailure.get();
+        return failure != null && compare(path, failure.path) > 0;
+    }
+
+    private void offerFailure(Failure failure){
+        this.firstFailure.accumulateAndGet(failure, (first, offered) ->
+            first == null || compare(offered.path, first.path) < 0 ? offered : first
+        );
+    }
+
+    //lexicographic order of the paths (i.e. the order of the sequential analysis)
+    private static int compare(int[] p1, int[] p2){
+        for(int i = 0; i < p1.length && i < p2.length; i++){
+            if(p1[i] != p2[i])
+                return Integer.compare(p1[i], p2[i]);
+        }
+        return Integer.compare(p1.length, p2.length);
+    }
+
+    private static int[] extend(int[] path, int choice){
+        int[] extendedPath = Arrays.copyOf(path, path.length + 1);
+        extendedPath[path.length] = choice;
+        return extendedPath;
+    }
+
+    private static class Failure {
+        private final int[] path;
+        private final Action action;
+        private final Branching branching;
+        private final Sequence trace;
+
+        private Failure(int[] path, Action action, Branching branching, Sequence trace){
+            this.path = path;
+            this.action = action;
+            this.branching = branching;
+            this.trace = trace;
+        }
+    }
+
+    //#endregion
+
+
+    //#region WEAKLY VALID PLAN ANALYSIS
+
+    //verdicts: true (valid trace found), false (no valid trace or cancelled)
+    private class WeakConfigTask extends RecursiveTask<Boolean> {
+        private final List<Application> frontier;
+        private final TraceFragment traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final BitSet sleepSet;
+
+        private WeakConfigTask(List<Application> frontier, TraceFragment traceFragment, CompiledPlan.Frontier remainingActions, BitSet sleepSet){
+            this.frontier = frontier;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.sleepSet = sleepSet;
+        }
+
+        @Override
+        protected Boolean compute(){
+            if(witnessFound.get())
+                return false;
+            if(this.frontier.isEmpty() || this.remainingActions.isEmpty()){
+                monitor.exploreLinearization();
+                witnessFound.set(true);
+                return true;
+            }
+
+            List<GlobalState> frontierStates = new ArrayList<>();
+            for(Application app : this.frontier)
+                frontierStates.add(app.getGlobalState());
+            TranspositionTable.Key key = transpositionTable.keyOf(frontierStates, this.remainingActions.getRemaining());
+            //only failing frontiers are recorded (with a sleep set included in the one of the task)
+            if(transpositionTable.lookup(key, this.sleepSet) != null)
+                return false;
+            monitor.exploreState(this.traceFragment.length());
+
+            BitSet analysedSleepSet = transpositionTable.getSleepSet(key);
+            BitSet sleepSet = Analyzer.intersection(this.sleepSet, analysedSleepSet);
+            BitSet skipped = analyzer.skippedActions(plan, this.sleepSet, analysedSleepSet);
+            List<WeakStepTask> steps = new ArrayList<>();
+            BitSet explored = (BitSet) sleepSet.clone();
+            for(int a = analyzer.nextChoice(this.remainingActions, skipped, 0); a >= 0; a = analyzer.nextChoice(this.remainingActions, skipped, a + 1)){
+                CompiledPlan.Frontier newRemainingActions = this.remainingActions.copy();
+                newRemainingActions.execute(a);
+                steps.add(new WeakStepTask(
+                    analyzer.cloneApps(this.frontier),
+                    this.traceFragment.append(plan.getAction(a)),
+                    newRemainingActions,
+                    plan.getAction(a),
+                    analyzer.sleepSetAfter(plan, a, explored, this.frontier)
+                ));
+                explored.set(a);
+            }
+
+            boolean verdict = anyWeaklyValid(steps);
+            if(!verdict && !witnessFound.get())
+                transpositionTable.record(key, false, sleepSet);
+            return verdict;
+        }
+    }
+
+    private class WeakStepTask extends RecursiveTask<Boolean> {
+        private final List<Application> frontier;
+        private final TraceFragment traceFragment;
+        private final CompiledPlan.Frontier remainingActions;
+        private final Action action;
+        private final BitSet sleepSet;
+
+        private WeakStepTask(List<Application> frontier, TraceFragment traceFragment, CompiledPlan.Frontier remainingActions, Action action, BitSet sleepSet){
+            this.frontier = frontier;
+            this.traceFragment = traceFragment;
+            this.remainingActions = remainingActions;
+            this.action = action;
+            this.sleepSet = sleepSet;
+        }
+
+        @Override
+        protected Boolean compute(){
+            if(witnessFound.get())
+                return false;
+
+            //failures are reported at the end of the analysis
+            List<Application> newFrontier = analyzer.advance(this.frontier, this.action, new AnalysisReport());
+            if(newFrontier == null)
+                return false;
+
+            return new WeakConfigTask(newFrontier, this.traceFragment, this.remainingActions, this.sleepSet).invoke();
+        }
+    }
+
+    //true if any task found a valid trace
+    private boolean anyWeaklyValid(List<? extends RecursiveTask<Boolean>> tasks){
+        if(tasks.size() < 2 || ForkJoinTask.getSurplusQueuedTaskCount() > SURPLUS_THRESHOLD){
+            for(RecursiveTask<Boolean> task : tasks){
+                if(task.invoke())
+                    return true;
+            }
+            return false;
+        }
+
+        for(int i = tasks.size() - 1; i > 0; i--)
+            tasks.get(i).fork();
+
+        boolean verdict = tasks.get(0).invoke();
+        for(int i = 1; i < tasks.size(); i++)
+            verdict = tasks.get(i).join() || verdict;
+        return verdict;
+    }
+
+    //reports the first failing trace of the sequential analysis, i.e. the one always picking
+    //the first action that can be executed
+    private void reportFirstFailingTrace(Application app){
+        List<Application> frontier = new ArrayList<>();
+        frontier.add(app);
+        Sequence traceFragment = new Sequence();
+        CompiledPlan.Frontier remainingActions = this.plan.newFrontier();
+
+        while(!frontier.isEmpty() && !remainingActions.isEmpty()){
+            int next = remainingActions.nextEnabled(0);
+            if(next < 0)
+                return;
+
+            remainingActions.execute(next);
+            traceFragment.getActions().add(this.plan.getAction(next));
+
+            AnalysisReport failure = new AnalysisReport();
+            frontier = this.analyzer.advance(this.analyzer.cloneApps(frontier), this.plan.getAction(next), failure);
+            if(frontier == null){
+                this.analyzer.reportFailedTrace(failure, remainingActions.completeTrace(traceFragment));
+                return;
+            }
+        }
+    }
+
+    //#endregion
+}
@@ -0,0 +1,21 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+/**
+ * order in which the analysis explores the configurations (i.e., the global states reached by
+ * executing some actions, with what is still to be executed)
+    * DFS: depth-first, on a single global state that is changed and restored (the default)
+    * BFS: breadth-first, by number of executed actions, hence a shortest counterexample (or witness) is found
+    * ITERATIVE_DEEPENING: depth-first up to a number of executed actions, increased by one until no
+      configuration is left out, hence a shortest counterexample is found with the memory of a depth-first
+      search (at the cost of exploring again the shallower configurations at each round)
+    * BEST_FIRST: by number of pending faults, the most faulted configurations first when looking for a
+      counterexample (--valid), the least faulted ones first when looking for a witness (--weakly-valid)
+    * all the strategies give the same verdicts, but they may report different counterexamples
+ */
+
+public enum SearchStrategy {
+    DFS,
+    BFS,
+    ITERATIVE_DEEPENING,
+    BEST_FIRST
+}
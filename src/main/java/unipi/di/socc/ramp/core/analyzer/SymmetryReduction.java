@@ -0,0 +1,158 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unipi.di.socc.ramp.core.analyzer.actions.*;
+import unipi.di.socc.ramp.core.model.FingerprintHash;
+import unipi.di.socc.ramp.core.model.GlobalState;
+import unipi.di.socc.ramp.core.model.NodeInstance;
+import unipi.di.socc.ramp.core.model.RuntimeBinding;
+
+/**
+ * symmetry reduction for the analysis
+    * the instances that are never named by the analysed actions (replicas) can be renamed without
+      changing what the actions do, as long as the renaming keeps the order of the ids: pi chooses the
+      capable instance with the lowest id among the instances of a node type (see Application.pi)
+    * hence two global states that are equal up to such a renaming are identified by the same
+      canonical fingerprint, and the analysis of one of them also holds for the other
+    * the canonical id of a replica is made of its node type, the number of named ids lower than its
+      id (including those of the instances created by the actions) and its position among the replicas
+      of its node type with the same number: the renaming between two equivalent global states is
+      unique, hence two global states have the same canonical form if and only if they are equivalent
+    * the canonical fingerprint of a global state is computed once, and then found by the fingerprint
+      of the global state (see GlobalState.getFingerprint)
+ */
+
+public class SymmetryReduction {
+
+    //ids named by the analysed actions, sorted
+    private final String[] namedIDs;
+
+    //fingerprint of a global state -> its canonical fingerprint (shared by the tasks of a parallel analysis)
+    private final Map<Fingerprint, long[]> canonicalFingerprints;
+
+    /**
+     * @param actions actions under analysis (a sequence or the actions of a plan)
+     */
+    public SymmetryReduction(Collection<Action> actions){
+        Set<String> namedInstances = new HashSet<>();
+
+        for(Action action : actions){
+            if(action instanceof OpStart)
+                namedInstances.add(((OpStart) action).getInstanceID());
+            if(action instanceof OpEnd)
+                namedInstances.add(((OpEnd) action).getInstanceID());
+            if(action instanceof ScaleIn)
+                namedInstances.add(((ScaleIn) action).getInstanceID());
+            if(action instanceof ScaleOut)
+                namedInstances.add(((ScaleOut) action).getIDToAssign());
+            if(action instanceof ScaleOutC){
+                namedInstances.add(((ScaleOutC) action).getIDToAssign());
+                namedInstances.add(((ScaleOutC) action).getContainerID());
+            }
+        }
+
+        this.namedIDs = namedInstances.toArray(new String[0]);
+        Arrays.sort(this.namedIDs);
+        this.canonicalFingerprints = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return true if instanceID is a replica (i.e., it is not named by the analysed actions)
+     */
+    public boolean isReplica(String instanceID){
+        return Arrays.binarySearch(this.namedIDs, instanceID) < 0;
+    }
+
+    /**
+     * @param gs global state to encode
+     * @return the 128-bit fingerprint of gs with its replicas canonically renamed
+     */
+    public long[] canonicalFingerprint(GlobalState gs){
+        Fingerprint fingerprint = new Fingerprint(gs.getFingerprint());
+        long[] canonicalFingerprint = this.canonicalFingerprints.get(fingerprint);
+        if(canonicalFingerprint == null){
+            canonicalFingerprint = this.computeCanonicalFingerprint(gs);
+            this.canonicalFingerprints.putIfAbsent(fingerprint, canonicalFingerprint);
+        }
+        return canonicalFingerprint;
+    }
+
+    private long[] computeCanonicalFingerprint(GlobalState gs){
+        Map<String, String> canonicalIDs = this.canonicalIDs(gs);
+
+        //instances in the order of their canonical ids
+        Map<String, String> originalIDs = new TreeMap<>();
+        for(String instanceID : gs.getActiveInstances().keySet())
+            originalIDs.put(canonicalIDs.getOrDefault(instanceID, instanceID), instanceID);
+
+        StringBuilder canonicalForm = new StringBuilder();
+        for(Map.Entry<String, String> entry : originalIDs.entrySet()){
+            NodeInstance instance = gs.getActiveInstances().get(entry.getValue());
+            canonicalForm
+                .append(entry.getKey()).append('|')
+                .append(instance.getNodeTypeName()).append('|')
+                .append(instance.getCurrentState()).append('[');
+
+            //the runtime bindings keep their order (the last one of a requirement is the one removed first)
+            for(RuntimeBinding rb : gs.getRuntimeBindings().get(entry.getValue()))
+                canonicalForm.append(rb.getReq().getName()).append('>').append(canonicalIDs.getOrDefault(rb.getNodeInstanceID(), rb.getNodeInstanceID())).append(',');
+            canonicalForm.append("];");
+        }
+        return hash(canonicalForm);
+    }
+
+    //replica id -> canonical id (#node type#named ids lower than the replica id#position of the replica)
+    private Map<String, String> canonicalIDs(GlobalState gs){
+        //the replicas of the same node type between the same named ids, sorted by id
+        Map<String, TreeSet<String>> replicas = new HashMap<>();
+        for(NodeInstance instance : gs.getActiveInstances().values()){
+            int position = Arrays.binarySearch(this.namedIDs, instance.getID());
+            if(position < 0){
+                String lowerNamedIDs = String.valueOf(-position - 1);
+                replicas.computeIfAbsent("#" + instance.getNodeTypeName() + "#" + lowerNamedIDs, group -> new TreeSet<>()).add(instance.getID());
+            }
+        }
+
+        Map<String, String> canonicalIDs = new HashMap<>();
+        for(Map.Entry<String, TreeSet<String>> group : replicas.entrySet()){
+            int i = 0;
+            for(String replicaID : group.getValue())
+                canonicalIDs.put(replicaID, group.getKey() + "#" + i++);
+        }
+        return canonicalIDs;
+    }
+
+    //seed of the hashes of the canonical forms (see FingerprintHash)
+    private static final long CANONICAL_SEED = 0x165667B19E3779F9L;
+
+    private static long[] hash(CharSequence canonicalForm){
+        return FingerprintHash.hash(CANONICAL_SEED, canonicalForm);
+    }
+
+    private static class Fingerprint {
+        private final long[] fingerprint;
+
+        private Fingerprint(long[] fingerprint){
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object obj){
+            return obj instanceof Fingerprint && Arrays.equals(this.fingerprint, ((Fingerprint) obj).fingerprint);
+        }
+
+        @Override
+        public int hashCode(){
+            return Arrays.hashCode(this.fingerprint);
+        }
+    }
+}
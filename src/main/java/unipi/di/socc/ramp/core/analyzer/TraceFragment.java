@@ -0,0 +1,47 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+
+/**
+ * persistent (immutable) trace fragment, i.e., the actions executed so far
+    * it is a list of actions linked backwards, hence appending an action costs O(1) and shares
+      the fragment with all the other fragments extending it (e.g., the tasks of a parallel analysis)
+    * it is turned into a Sequence only when it has to be reported
+ */
+
+class TraceFragment {
+
+    static final TraceFragment EMPTY = new TraceFragment(null, null);
+
+    //last action of the fragment (null if the fragment is empty)
+    private final Action last;
+    //the fragment without its last action
+    private final TraceFragment prefix;
+    private final int length;
+
+    private TraceFragment(Action last, TraceFragment prefix){
+        this.last = last;
+        this.prefix = prefix;
+        this.length = prefix == null ? 0 : prefix.length + 1;
+    }
+
+    TraceFragment append(Action action){
+        return new TraceFragment(action, this);
+    }
+
+    int length(){
+        return this.length;
+    }
+
+    Sequence toSequence(){
+        List<Action> actions = new ArrayList<>(this.length);
+        for(TraceFragment fragment = this; fragment.prefix != null; fragment = fragment.prefix)
+            actions.add(fragment.last);
+        Collections.reverse(actions);
+        return new Sequence(actions);
+    }
+}
@@ -0,0 +1,184 @@
+package unipi.di.socc.ramp.core.analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import unipi.di.socc.ramp.core.model.GlobalState;
+
+/**
+ * memo table for the analysis
+    * it records the verdict of the analysis for a pair <global state, position>, where
+    * position identifies what is still to be analysed (e.g. the cursor of the next action of
+    * the analysed sequence, or the remaining actions of the analysed plan)
+    * two fault branches reaching the same global state at the same position have to analyse
+    * the very same suffix, hence the verdict of the first one can be reused by the others
+    * with partial order reduction, a verdict is found by an analysis skipping the traces that start
+      with the actions of a sleep set, and an analysis of the same pair with a larger sleep set
+      analyses a part of the same traces, hence it can reuse the verdict
+    * the table can be shared by the tasks of a parallel analysis
+    * global states are identified by their 128-bit fingerprint, hence two different global
+      states are confused with negligible probability
+ */
+
+public class TranspositionTable {
+
+    //<global state fingerprint, position> -> verdict
+    private final Map<Key, Verdict> verdicts;
+    private final AtomicInteger hits;
+
+    //if not null, global states equal up to renaming replicas share their verdicts
+    private SymmetryReduction symmetryReduction;
+
+    public TranspositionTable(){
+        this.verdicts = new ConcurrentHashMap<>();
+        this.hits = new AtomicInteger();
+    }
+
+    public SymmetryReduction getSymmetryReduction() {
+        return symmetryReduction;
+    }
+    public void setSymmetryReduction(SymmetryReduction symmetryReduction) {
+        this.symmetryReduction = symmetryReduction;
+    }
+
+    /**
+     * @param gs global state reached by the analysis
+     * @param position what is still to be analysed (it must implement equals and hashCode)
+     * @return the key identifying the pair <gs, position>
+     */
+    public Key keyOf(GlobalState gs, Object position){
+        return new Key(this.fingerprintOf(gs), position);
+    }
+
+    /**
+     * @param frontier global states reached by the analysis that share the same position
+     * @param position what is still to be analysed (it must implement equals and hashCode)
+     * @return the key identifying the pair <frontier, position>, regardless of the order of frontier
+     */
+    public Key keyOf(Collection<GlobalState> frontier, Object position){
+        List<long[]> fingerprints = new ArrayList<>();
+        for(GlobalState gs : frontier)
+            fingerprints.add(this.fingerprintOf(gs));
+        fingerprints.sort((f1, f2) -> f1[0] != f2[0] ? Long.compare(f1[0], f2[0]) : Long.compare(f1[1], f2[1]));
+
+        long[] frontierFingerprint = new long[2 * fingerprints.size()];
+        for(int i = 0; i < fingerprints.size(); i++){
+            frontierFingerprint[2 * i] = fingerprints.get(i)[0];
+            frontierFingerprint[2 * i + 1] = fingerprints.get(i)[1];
+        }
+        return new Key(frontierFingerprint, position);
+    }
+
+    private long[] fingerprintOf(GlobalState gs){
+        if(this.symmetryReduction != null)
+            return this.symmetryReduction.canonicalFingerprint(gs);
+        return gs.getFingerprint();
+    }
+
+    /**
+     * @param key key of a pair <global state, position>
+     * @return the recorded verdict, null if the pair was never analysed before
+     */
+    public Boolean lookup(Key key){
+        return this.lookup(key, new BitSet());
+    }
+
+    /**
+     * @param key key of a pair <global state, position>
+     * @param sleepSet ids of the actions whose traces are not to be analysed from the pair
+     * @return the recorded verdict, null if the pair was never analysed before with a sleep set
+     *   included in sleepSet
+     */
+    public Boolean lookup(Key key, BitSet sleepSet){
+        Verdict verdict = this.verdicts.get(key);
+        if(verdict == null || !isSubset(verdict.sleepSet, sleepSet))
+            return null;
+        this.hits.incrementAndGet();
+        return verdict.verdict;
+    }
+
+    /**
+     * @param key key of a pair <global state, position>
+     * @return the sleep set with which the pair was analysed, null if it was never analysed before
+     *   (an analysis of the pair with a sleep set not including it only has to analyse the traces
+     *   starting with the actions asleep then but not now, see Analyzer)
+     */
+    public BitSet getSleepSet(Key key){
+        Verdict verdict = this.verdicts.get(key);
+        return verdict == null ? null : verdict.sleepSet;
+    }
+
+    public void record(Key key, boolean verdict){
+        this.record(key, verdict, new BitSet());
+    }
+
+    /**
+     * @param sleepSet ids of the actions whose traces were not analysed to find the verdict
+     *   (it must not be changed afterwards)
+     */
+    public void record(Key key, boolean verdict, BitSet sleepSet){
+        this.verdicts.put(key, new Verdict(verdict, sleepSet));
+    }
+
+    private static boolean isSubset(BitSet subset, BitSet set){
+        for(int i = subset.nextSetBit(0); i >= 0; i = subset.nextSetBit(i + 1)){
+            if(!set.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    public void clear(){
+        this.verdicts.clear();
+    }
+
+    public int size(){
+        return this.verdicts.size();
+    }
+
+    public int getHits(){
+        return this.hits.get();
+    }
+
+    private static class Verdict {
+        private final boolean verdict;
+        private final BitSet sleepSet;
+
+        private Verdict(boolean verdict, BitSet sleepSet){
+            this.verdict = verdict;
+            this.sleepSet = sleepSet;
+        }
+    }
+
+    public static class Key {
+        //fingerprints of the global states (see GlobalState.getFingerprint)
+        private final long[] globalState;
+        private final Object position;
+
+        private Key(long[] globalState, Object position){
+            this.globalState = globalState;
+            this.position = position;
+        }
+
+        @Override
+        public boolean equals(Object obj){
+            if(!(obj instanceof Key))
+                return false;
+
+            Key check = (Key) obj;
+            return this.position.equals(check.position) && Arrays.equals(this.globalState, check.globalState);
+        }
+
+        @Override
+        public int hashCode(){
+            return Arrays.hashCode(this.globalState) * 31 + this.position.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package unipi.di.socc.ramp.core.analyzer.exceptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+
+public class CyclicPlanException extends Exception {
+
+    //actions on a cycle of the partial order (each one has to be executed before the next one, and the last before the first)
+    private final List<Action> cycle;
+
+    public CyclicPlanException() {
+        super();
+        this.cycle = new ArrayList<>();
+    }
+    public CyclicPlanException(List<Action> cycle){
+        super("cyclic partial order among " + cycle.size() + " actions");
+        this.cycle = cycle;
+    }
+
+    public List<Action> getCycle() {
+        return cycle;
+    }
+}
@@ -1,9 +1,9 @@
 package unipi.di.socc.ramp.core.model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import unipi.di.socc.ramp.core.analyzer.actions.*;
 import unipi.di.socc.ramp.core.model.exceptions.*;
@@ -12,11 +12,10 @@ public class Application{
 
     private String name;
     
-    //static nodes of the application: node's name -> node
-    private Map<String, Node> nodes;
+    //static nodes and binding function of the application (shared by its clones)
+    private Topology topology;
     private GlobalState globalState;
 
-    private Map<NodeReq, NodeCap> bindingFunction; 
     private PiVersion piVersion;
     private boolean deterministicPi;
 
@@ -31,9 +30,8 @@ public class Application{
             IllegalArgumentException 
     {
         this.setName(name);
-        this.setNodes(new HashMap<>());
+        this.topology = new Topology();
         this.globalState = new GlobalState(this);
-        this.setBindingFunction(new HashMap<>());
         this.setPiVersion(piVersion);
         this.setDeterministicPi();
     }
@@ -52,9 +50,27 @@ public class Application{
             NullPointerException
     {
         this.setName(name);
-        this.setNodes(nodes);
+        this.topology = new Topology(nodes, bf);
+        this.globalState = new GlobalState(this);
+        this.setPiVersion(piVersion);
+        this.setDeterministicPi();
+    }
+
+    /**
+     * @param name name of the application
+     * @param piVersion version of the implementtion of pi
+     * @param topology static topology of the application (shared, as it is immutable)
+     * @throws IllegalArgumentException
+     * @throws NullPointerException
+     */
+    public Application(String name, PiVersion piVersion, Topology topology)
+        throws
+            IllegalArgumentException,
+            NullPointerException
+    {
+        this.setName(name);
+        this.setTopology(topology);
         this.globalState = new GlobalState(this);
-        this.setBindingFunction(bf);
         this.setPiVersion(piVersion);
         this.setDeterministicPi();
     }
@@ -81,13 +97,19 @@ public class Application{
             throw new NullPointerException();
         this.piVersion = piVersion;
     }
+    public Topology getTopology() {
+        return topology;
+    }
+    public void setTopology(Topology topology) {
+        if(topology == null)
+            throw new NullPointerException();
+        this.topology = topology;
+    }
     public Map<NodeReq, NodeCap> getBindingFunction() {
-        return bindingFunction;
+        return this.topology.getBindingFunction();
     }
     public void setBindingFunction(Map<NodeReq, NodeCap> bindingFunction) {
-        if(bindingFunction == null)
-            throw new NullPointerException();
-        this.bindingFunction = bindingFunction;
+        this.topology = new Topology(this.topology.getNodes(), bindingFunction);
     }
     public GlobalState getGlobalState() {
         return globalState;
@@ -98,12 +120,10 @@ public class Application{
         this.globalState = globalState;
     }
     public Map<String, Node> getNodes() {
-        return nodes;
+        return this.topology.getNodes();
     }
     public void setNodes(Map<String, Node> nodes) {
-        if(nodes == null)
-            throw new NullPointerException();
-        this.nodes = nodes;
+        this.topology = new Topology(nodes, this.topology.getBindingFunction());
     }
     public String getName() {
         return name;
@@ -133,7 +153,7 @@ public class Application{
         if(node == null)
             throw new NullPointerException();
         
-        this.nodes.put(node.getName(), node);
+        this.topology = this.topology.withNode(node);
     }
 
     public void addStaticBinding(NodeReq nodeReq, NodeCap nodeCap)
@@ -144,12 +164,12 @@ public class Application{
         if(nodeReq == null || nodeCap == null)
             throw new NullPointerException();
         
-        if(!this.nodes.containsKey(nodeReq.getNodeName()))
+        if(!this.getNodes().containsKey(nodeReq.getNodeName()))
             throw new NodeUnknownException();
-        if(!this.nodes.containsKey(nodeCap.getNodeName()))
+        if(!this.getNodes().containsKey(nodeCap.getNodeName()))
         throw new NodeUnknownException();
 
-        this.bindingFunction.put(nodeReq, nodeCap);
+        this.topology = this.topology.withStaticBinding(nodeReq, nodeCap);
     }
 
     //############################## PI IMPLEMENTATIONS ############################
@@ -174,7 +194,7 @@ public class Application{
     /**
      * @param instanceID identifier of the instance with the req about we want a server
      * @param req requirement that have to be satisfied
-     * @return the first found instance that can satisfy the requirement of the given instance
+     * @return the instance with the lowest id among those that can satisfy the requirement of the given instance
      * @throws NullPointerException
      * @throws IllegalArgumentException
      * @throws InstanceUnknownException
@@ -189,20 +209,11 @@ public class Application{
         if(req == null)
             throw new NullPointerException();
 
-        NodeReq nodeReq = new NodeReq(instance.getNodeType().getName(), req.getName());
-        NodeCap nodeCap = this.bindingFunction.get(nodeReq);
+        NodeCap nodeCap = this.topology.getStaticBinding(instance.getNodeType().getName(), req.getName());
 
-        if(nodeCap != null){
-            for(NodeInstance activeInstance : this.globalState.getActiveInstances().values()){
-                
-                boolean instanceRightType = nodeCap.getNodeName().equals(activeInstance.getNodeType().getName());
-                boolean instanceOfferingCap = activeInstance.getOfferedCaps().contains(nodeCap.getCap());
-
-                if(instanceOfferingCap && instanceRightType)
-                    return activeInstance;
-                
-            }
-        }
+        //the capable instance with the lowest id (so that the choice does not depend on the map of the active instances)
+        if(nodeCap != null && !this.globalState.getInstancesOffering(nodeCap).isEmpty())
+            return this.globalState.getActiveInstances().get(this.globalState.getInstancesOffering(nodeCap).first());
 
         return null;
     }
@@ -249,7 +260,7 @@ public class Application{
             throw new OperationNotAvailableException();
 
         //instance goes in the new transient state
-        instance.setCurrentState(targetTransition.getName());
+        this.globalState.setInstanceState(instance, targetTransition.getName());
         //kill old runtime bindings (about previous state)
         this.globalState.removeOldRuntimeBindings(instanceID);
         //add new runtime bindings (about new transient state)
@@ -274,8 +285,10 @@ public class Application{
         if(this.globalState.isBrokenInstance(instanceID))
             throw new FailedOperationException();
 
-        Transition targetTransition = 
-            instance.getNodeType().getManProtocol().getTransitions().get(instance.getCurrentState());
+        ManagementProtocol mp = instance.getNodeType().getManProtocol();
+        Transition targetTransition = mp.getCompiled() != null
+            ? mp.getCompiled().getTransitionOf(instance.getCurrentState())
+            : mp.getTransitions().get(instance.getCurrentState());
         
         if(!this.globalState.getPendingFaults(instanceID).isEmpty())
             throw new FailedOperationException();
@@ -283,7 +296,7 @@ public class Application{
 
 
         //instance goes in the new final state of the transition
-        instance.setCurrentState(targetTransition.getEndState());
+        this.globalState.setInstanceState(instance, targetTransition.getEndState());
         //kill old runtime bindings (about previous state)
         this.globalState.removeOldRuntimeBindings(instanceID);
         //add new runtime bindings (about new state)
@@ -317,7 +330,7 @@ public class Application{
         if(this.globalState.getActiveInstances().containsKey(newNodeInstanceID))
             throw new AlreadyUsedIDException();
 
-        Node node = this.nodes.get(nodeName);
+        Node node = this.getNodes().get(nodeName);
         //node unknown
         if(node == null)
             throw new NodeUnknownException();
@@ -330,10 +343,8 @@ public class Application{
         
         //creates new instance
         NodeInstance newNodeInstance = new NodeInstance(node, node.getManProtocol().getInitialState(), newNodeInstanceID);
-        //add the new instance to the set of active instances
-        this.globalState.getActiveInstances().put(newNodeInstanceID, newNodeInstance);
-        //initialize the runtime bindings for the new instance
-        this.globalState.getRuntimeBindings().put(newNodeInstanceID, new ArrayList<RuntimeBinding>());
+        //add the new instance to the set of active instances (with no runtime bindings)
+        this.globalState.addActiveInstance(newNodeInstance);
         //add the runtime bindings
         this.globalState.addNewRuntimeBindings(newNodeInstanceID);
 
@@ -358,7 +369,7 @@ public class Application{
         if(this.globalState.getActiveInstances().containsKey(newNodeInstanceID))
             throw new AlreadyUsedIDException();
 
-        Node node = this.nodes.get(nodeName);
+        Node node = this.getNodes().get(nodeName);
         //node unknown
         if(node == null)
             throw new NodeUnknownException();
@@ -374,17 +385,14 @@ public class Application{
         if(containmentReq == null)
             throw new RuleNotApplicableException();
 
-        NodeReq nodeReq = new NodeReq(nodeName, containmentReq.getName());
-        NodeCap nodeCap = this.bindingFunction.get(nodeReq);
+        NodeCap nodeCap = this.topology.getStaticBinding(nodeName, containmentReq.getName());
 
         if(!nodeCap.getNodeName().equals(container.getNodeType().getName()))
             throw new RuleNotApplicableException();
 
         NodeInstance newNodeInstance = new NodeInstance(node, node.getManProtocol().getInitialState(), newNodeInstanceID);
-        //add the new instance to the set of active instances
-        this.globalState.getActiveInstances().put(newNodeInstanceID, newNodeInstance);
-        //initialize the runtime bindings for the new instance
-        this.globalState.getRuntimeBindings().put(newNodeInstanceID, new ArrayList<RuntimeBinding>());
+        //add the new instance to the set of active instances (with no runtime bindings)
+        this.globalState.addActiveInstance(newNodeInstance);
         //adding the containment runtime binding
         this.globalState.addRuntimeBinding(newNodeInstanceID, containmentReq, containerID);
         //add the non containment runtime bidnigns
@@ -402,14 +410,16 @@ public class Application{
     {
         this.globalState.getNodeInstanceByID(instanceID);
 
-        //remove all runtime bindings
-        this.globalState.removeAllRuntimeBindingsBothWays(instanceID);
+        //if instance is a container this causes the death of the instances it contains (transitively)
+        for(String killedInstanceID : this.globalState.getContainmentSubtree(instanceID)){
+            //remove all runtime bindings
+            this.globalState.removeAllRuntimeBindingsBothWays(killedInstanceID);
         
-        //remove the instance from the active instances and runtime bindings
-        this.globalState.getActiveInstances().remove(instanceID);
-        this.globalState.getRuntimeBindings().remove(instanceID);
+            //remove the instance from the active instances and runtime bindings
+            this.globalState.removeActiveInstance(killedInstanceID);
+        }
 
-        //if instance was a container this cause the death of the instances it was containing
+        //instances that were already broken
         this.destroy();
     }
 
@@ -440,6 +450,26 @@ public class Application{
             throw new RuleNotApplicableException();
 
         NodeInstance instance = this.globalState.getNodeInstanceByID(fault.getNodeInstanceID());
+
+        //fault handling table of the compiled protocol
+        CompiledProtocol compiled = instance.getNodeType().getManProtocol().getCompiled();
+        String targetFaultState = compiled != null
+            ? compiled.getFaultHandlingState(instance.getCurrentState(), fault.getReq())
+            : this.faultHandlingState(instance, fault);
+
+        if(targetFaultState == null)
+            throw new FailedFaultHandlingExecption();
+
+        //put the instance in the new fault handling state
+        this.globalState.setInstanceState(instance, targetFaultState);
+        //remove old bindings
+        this.globalState.removeOldRuntimeBindings(instance.getID());
+        //add new bindings
+        this.globalState.addNewRuntimeBindings(instance.getID());
+    }
+
+    //state where instance goes to handle fault (null if none)
+    private String faultHandlingState(NodeInstance instance, Fault fault){
         List<String> faultStates = new ArrayList<>();
 
         //phi: state s -> fault handling states if fault in s
@@ -452,9 +482,6 @@ public class Application{
                 faultStates.add(phiState);
         }
 
-        if(faultStates.isEmpty())
-            throw new FailedFaultHandlingExecption();
-        
         //to maintain detrminism behaviour we always go to the state with most needed requirements
         String targetFaultState = null;
         int max = -1;
@@ -465,13 +492,7 @@ public class Application{
                 targetFaultState = state;
             }
         }
-
-        //put the instance in the new fault handling state
-        instance.setCurrentState(targetFaultState);
-        //remove old bindings
-        this.globalState.removeOldRuntimeBindings(instance.getID());
-        //add new bindings
-        this.globalState.addNewRuntimeBindings(instance.getID());
+        return targetFaultState;
     }
 
     /***
@@ -507,79 +528,43 @@ public class Application{
 
     //#region UTILITIES
 
-    @Override
-    public Application clone(){ 
-        Application clonedApp = new Application(this.name, this.piVersion);
-
-        //CLONE APPLICATION TOPOLOGY
-
-        //cloning nodes
-        for(String nodeName : this.nodes.keySet()){
-            Node node = this.nodes.get(nodeName);
-            ManagementProtocol nodeMP = node.getManProtocol();
-
-            Node clonedNode = new Node(node.getName(), new ManagementProtocol(new String(nodeMP.getInitialState())));
-            ManagementProtocol clonedNodeMP = clonedNode.getManProtocol();
-
-            //cloning ops
-            for(String nO : node.getOps())
-                clonedNode.addOperation(nO);
-            
-            //cloning reqs
-            for(Requirement nR : node.getReqs())
-                clonedNode.addRequirement(nR.clone());
-            
-            //cloning caps
-            for(String nC : node.getCaps())
-                clonedNode.addCapability(nC);
-
-            //cloning states
-            for(String nS : nodeMP.getStates())
-                clonedNodeMP.addState(nS);
-
-            //cloning transitons
-            for(Transition nT : nodeMP.getTransitions().values())
-                clonedNodeMP.addTransition(nT.getStartState(), nT.getOp(), nT.getEndState());
-            
-            //cloning rho
-            for(String nS : nodeMP.getRho().keySet()){
-                for(Requirement req : nodeMP.getRho().get(nS))
-                    clonedNodeMP.getRho().get(nS).add(req.clone());
-            }
-            //cloning gamma
-            for(String nS : nodeMP.getGamma().keySet()){
-                for(String cap : nodeMP.getGamma().get(nS))
-                    clonedNodeMP.getGamma().get(nS).add(cap);
-            }
-            //cloning phi
-            for(String nS : nodeMP.getPhi().keySet()){
-                for(String faultHandleState : nodeMP.getPhi().get(nS))
-                    clonedNodeMP.getPhi().get(nS).add(faultHandleState);
-            }
+    /**
+     * compiles the management protocols of the nodes into the tables used by the model rules
+     * (the nodes are shared by the copies of the application, hence so are the compiled protocols)
+     */
+    public void compileProtocols(){
+        for(Node node : this.getNodes().values())
+            node.getManProtocol().compile(node.getReqs());
+    }
 
-            clonedApp.addNode(clonedNode);
+    /**
+     * static check of the fault handling (it compiles the protocols)
+     * @return node's name -> state -> requirements that can be faulted in the state but whose fault
+     *   cannot be handled (i.e., handleFault would fail)
+     */
+    public Map<String, Map<String, List<Requirement>>> getUnhandledFaults(){
+        this.compileProtocols();
+
+        Map<String, Map<String, List<Requirement>>> unhandledFaults = new TreeMap<>();
+        for(Node node : this.getNodes().values()){
+            Map<String, List<Requirement>> nodeUnhandledFaults = node.getManProtocol().getCompiled().getUnhandledFaults();
+            if(!nodeUnhandledFaults.isEmpty())
+                unhandledFaults.put(node.getName(), nodeUnhandledFaults);
         }
+        return unhandledFaults;
+    }
 
-        //cloning static binding
-        for(NodeReq nodeReq : this.bindingFunction.keySet()){
-            NodeCap nodeCap = this.bindingFunction.get(nodeReq);
-
-            NodeReq clonedNodeReq = new NodeReq(nodeReq.getNodeName(), nodeReq.getReqName());
-            NodeCap clonedNodeCap = new NodeCap(nodeCap.getNodeName(), nodeCap.getCap());
-
-            clonedApp.bindingFunction.put(clonedNodeReq, clonedNodeCap);
-        }
+    @Override
+    public Application clone(){ 
+        //the topology is immutable, hence it is shared
+        Application clonedApp = new Application(this.name, this.piVersion, this.topology);
 
         //CLONE THE GLOBAL STATE
 
         //clone the active instances
         for(NodeInstance activeInstance : this.globalState.getActiveInstances().values()){
-            //retrieve the node type (CLONED) of the cloned instance we're about to make
-            Node clonedNode = clonedApp.getNodes().get(activeInstance.getNodeType().getName());
-
-            //it is important that the cloned instance has as a node type referement the cloned node
             NodeInstance clonedInstance = new NodeInstance(
-                clonedNode, 
+                activeInstance.getNodeType(), 
                 activeInstance.getCurrentState(), 
                 activeInstance.getID()
             );
@@ -591,31 +576,40 @@ public class Application{
         for(String instanceID : this.globalState.getRuntimeBindings().keySet()){
             List<RuntimeBinding> clonedRuntimeBindings = new ArrayList<>();
 
-            for(RuntimeBinding instanceRB : this.globalState.getRuntimeBindings().get(instanceID)){
-
-                RuntimeBinding clonedRuntimeBinding = new RuntimeBinding(
-                    instanceRB.getReq().clone(), 
-                    instanceRB.getNodeInstanceID()
-                );
-                
-                clonedRuntimeBindings.add(clonedRuntimeBinding);
-            }
+            //runtime bindings (and their requirements) are immutable, hence they are shared
+            clonedRuntimeBindings.addAll(this.globalState.getRuntimeBindings().get(instanceID));
             clonedApp.globalState.getRuntimeBindings().put(instanceID, clonedRuntimeBindings);
         }
 
+        if(this.globalState.isIndexed())
+            clonedApp.globalState.buildIndexes();
+
         return clonedApp;
     }
 
+    /**
+     * @return an application equal to this one that can be changed independently from it
+     *   (if the global state is persistent the application shares with the fork also the global
+     *   state structure, otherwise it is cloned)
+     */
+    public Application fork(){
+        if(!this.globalState.isPersistent())
+            return this.clone();
+
+        Application forkedApp = new Application(this.name, this.piVersion, this.topology);
+        forkedApp.setGlobalState(this.globalState.fork(forkedApp));
+        return forkedApp;
+    }
+
     @Override
     public boolean equals(Object obj){
 
         Application check = (Application) obj;
 
         return 
-            this.bindingFunction.equals(check.bindingFunction) &&
             this.deterministicPi == check.deterministicPi &&
             this.globalState.equals(check.globalState) &&
-            this.nodes.equals(check.nodes) && 
+            this.topology.equals(check.topology) && 
             this.name.equals(check.name) &&
             this.piVersion == check.piVersion
         ;
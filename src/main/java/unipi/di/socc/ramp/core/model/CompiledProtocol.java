@@ -0,0 +1,232 @@
+package unipi.di.socc.ramp.core.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * compiled (read-only) form of a management protocol, on which the model rules run without allocating
+    * states, operations, requirements and capabilities are numbered by small integer ids
+    * the transitions are stored in a dense (state, op) table, and the transient state of each transition
+      is mapped back to it
+    * rho and gamma are stored as per-state bitsets over the requirements and the capabilities of the protocol
+      (the requirements of the node come first, in their order, so that their ids are their positions)
+    * phi is stored as per-state arrays of state ids, from which the target of the fault handling of
+      each (state, requirement) is precomputed
+ */
+
+public class CompiledProtocol {
+
+    //requirements of the node the protocol was compiled for
+    private final List<Requirement> nodeReqs;
+
+    private final String[] states;
+    private final Map<String, Integer> stateIDs;
+    private final Map<String, Integer> opIDs;
+    private final Map<Requirement, Integer> reqIDs;
+    private final List<Requirement> reqs;
+    private final Map<String, Integer> capIDs;
+
+    //[state id][op id] -> transition starting in the state by the op (null if none)
+    private final Transition[][] transitions;
+    //[state id] -> transition of which the state is the transient state (null if the state is not transient)
+    private final Transition[] transientStates;
+
+    //[state id] -> ids of the requirements needed in the state
+    private final BitSet[] rho;
+    //[state id] -> ids of the capabilities offered in the state
+    private final BitSet[] gamma;
+    //[state id] -> ids of the fault handling states of the state
+    private final int[][] phi;
+    //[state id][req id] -> id of the state where a fault of the req is handled (-1 if none)
+    //(the last column is for the requirements that no state needs)
+    private final int[][] faultHandlingStates;
+
+    /**
+     * @param mp management protocol to compile
+     * @param nodeReqs requirements of the node of the protocol
+     */
+    public CompiledProtocol(ManagementProtocol mp, List<Requirement> nodeReqs){
+        this.nodeReqs = new ArrayList<>(nodeReqs);
+        List<String> mpStates = mp.getStates();
+        this.states = mpStates.toArray(new String[0]);
+        this.stateIDs = new HashMap<>();
+        for(int i = 0; i < this.states.length; i++)
+            this.stateIDs.put(this.states[i], i);
+
+        this.opIDs = new HashMap<>();
+        for(Transition t : mp.getTransitions().values())
+            this.opIDs.putIfAbsent(t.getOp(), this.opIDs.size());
+
+        //as NodeInstance.getPossibleTransitions, the first transition wins if the protocol is not deterministic
+        this.transitions = new Transition[this.states.length][this.opIDs.size()];
+        this.transientStates = new Transition[this.states.length];
+        for(Transition t : mp.getTransitions().values()){
+            Integer startID = this.stateIDs.get(t.getStartState());
+            if(startID != null && this.transitions[startID][this.opIDs.get(t.getOp())] == null)
+                this.transitions[startID][this.opIDs.get(t.getOp())] = t;
+            this.transientStates[this.stateIDs.get(t.getName())] = t;
+        }
+
+        this.reqIDs = new HashMap<>();
+        this.reqs = new ArrayList<>();
+        for(Requirement req : nodeReqs)
+            this.addReq(req);
+        this.capIDs = new HashMap<>();
+        this.rho = new BitSet[this.states.length];
+        this.gamma = new BitSet[this.states.length];
+        for(int i = 0; i < this.states.length; i++){
+            this.rho[i] = new BitSet();
+            for(Requirement req : mp.getRho().get(this.states[i]))
+                this.rho[i].set(this.addReq(req));
+            this.gamma[i] = new BitSet();
+            for(String cap : mp.getGamma().get(this.states[i])){
+                this.capIDs.putIfAbsent(cap, this.capIDs.size());
+                this.gamma[i].set(this.capIDs.get(cap));
+            }
+        }
+
+        //fault handling states that are not states of the protocol are ignored
+        this.phi = new int[this.states.length][];
+        for(int i = 0; i < this.states.length; i++){
+            List<Integer> handlers = new ArrayList<>();
+            for(String phiState : mp.getPhi().get(this.states[i])){
+                Integer phiStateID = this.stateIDs.get(phiState);
+                if(phiStateID != null)
+                    handlers.add(phiStateID);
+            }
+            this.phi[i] = handlers.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        //as Application.handleFault: among the fault handling states that do not need the faulted
+        //requirement, the first one with most needed requirements
+        this.faultHandlingStates = new int[this.states.length][this.reqIDs.size() + 1];
+        for(int i = 0; i < this.states.length; i++){
+            for(int reqID = 0; reqID <= this.reqIDs.size(); reqID++){
+                int target = -1;
+                int max = -1;
+                for(int phiStateID : this.phi[i]){
+                    if(this.rho[phiStateID].get(reqID))
+                        continue;
+                    int neededReqs = mp.getRho().get(this.states[phiStateID]).size();
+                    if(neededReqs > max){
+                        max = neededReqs;
+                        target = phiStateID;
+                    }
+                }
+                this.faultHandlingStates[i][reqID] = target;
+            }
+        }
+    }
+
+    private int addReq(Requirement req){
+        Integer reqID = this.reqIDs.get(req);
+        if(reqID == null){
+            reqID = this.reqs.size();
+            this.reqIDs.put(req, reqID);
+            this.reqs.add(req);
+        }
+        return reqID;
+    }
+
+    /**
+     * @return true if the protocol was compiled for a node with the requirements nodeReqs
+     */
+    public boolean isCompiledFor(List<Requirement> nodeReqs){
+        return this.nodeReqs.equals(nodeReqs);
+    }
+
+    /**
+     * @return the id of req (-1 if it is not a requirement of the protocol)
+     */
+    public int getReqID(Requirement req){
+        Integer reqID = this.reqIDs.get(req);
+        return reqID != null ? reqID : -1;
+    }
+    public Requirement getReq(int reqID){
+        return this.reqs.get(reqID);
+    }
+
+    /**
+     * @return the ids of the requirements needed in state (empty if state is not a state of the protocol)
+     */
+    public BitSet getNeededReqs(String state){
+        Integer stateID = this.stateIDs.get(state);
+        return stateID != null ? this.rho[stateID] : new BitSet();
+    }
+
+    /**
+     * @return the id of state (-1 if it is not a state of the protocol)
+     */
+    public int getStateID(String state){
+        Integer stateID = this.stateIDs.get(state);
+        return stateID != null ? stateID : -1;
+    }
+
+    /**
+     * @return the transition starting in state by op (null if none)
+     */
+    public Transition getTransition(String state, String op){
+        Integer stateID = this.stateIDs.get(state);
+        Integer opID = this.opIDs.get(op);
+        if(stateID == null || opID == null)
+            return null;
+        return this.transitions[stateID][opID];
+    }
+
+    /**
+     * @return the transition of which state is the transient state (null if state is not transient)
+     */
+    public Transition getTransitionOf(String state){
+        Integer stateID = this.stateIDs.get(state);
+        return stateID != null ? this.transientStates[stateID] : null;
+    }
+
+    /**
+     * @return true if req is needed in state
+     */
+    public boolean isNeeded(String state, Requirement req){
+        Integer stateID = this.stateIDs.get(state);
+        Integer reqID = this.reqIDs.get(req);
+        return stateID != null && reqID != null && this.rho[stateID].get(reqID);
+    }
+
+    /**
+     * @return true if cap is offered in state
+     */
+    public boolean isOffered(String state, String cap){
+        Integer stateID = this.stateIDs.get(state);
+        Integer capID = this.capIDs.get(cap);
+        return stateID != null && capID != null && this.gamma[stateID].get(capID);
+    }
+
+    /**
+     * @return the state where the instances in state go when req is faulted (null if the fault cannot be handled)
+     */
+    public String getFaultHandlingState(String state, Requirement req){
+        Integer stateID = this.stateIDs.get(state);
+        if(stateID == null)
+            return null;
+        Integer reqID = this.reqIDs.get(req);
+        int target = this.faultHandlingStates[stateID][reqID != null ? reqID : this.reqIDs.size()];
+        return target >= 0 ? this.states[target] : null;
+    }
+
+    /**
+     * @return state -> requirements (non containment) needed in the state whose fault cannot be handled
+     *   (i.e., no fault handling state of the state does not need them)
+     */
+    public Map<String, List<Requirement>> getUnhandledFaults(){
+        Map<String, List<Requirement>> unhandledFaults = new LinkedHashMap<>();
+        for(int i = 0; i < this.states.length; i++){
+            for(int reqID = this.rho[i].nextSetBit(0); reqID >= 0; reqID = this.rho[i].nextSetBit(reqID + 1)){
+                if(!this.reqs.get(reqID).isContainment() && this.faultHandlingStates[i][reqID] < 0)
+                    unhandledFaults.computeIfAbsent(this.states[i], state -> new ArrayList<>()).add(this.reqs.get(reqID));
+            }
+        }
+        return unhandledFaults;
+    }
+}
@@ -0,0 +1,45 @@
+package unipi.di.socc.ramp.core.model;
+
+/**
+ * hashing of the fingerprints of the global states
+    * a hash is made of two independent 64-bit hashes (FNV-1a-like on the strings, with different
+      multipliers, finalized with the splitmix64 mixer)
+    * used by GlobalState for the hashes of its instances and bindings, and by the symmetry reduction
+      for the hash of the canonical form of a global state
+ */
+
+public final class FingerprintHash {
+
+    private FingerprintHash(){}
+
+    /**
+     * @param seed seed of the hash (different kinds of elements use different seeds)
+     * @param strings strings to hash, in order
+     * @return the two 64-bit hashes of the strings
+     */
+    public static long[] hash(long seed, CharSequence... strings){
+        long[] hash = { seed, ~seed };
+        for(CharSequence string : strings)
+            absorb(hash, string);
+        return hash;
+    }
+
+    private static void absorb(long[] hash, CharSequence string){
+        for(int i = 0; i < string.length(); i++){
+            hash[0] = (hash[0] ^ string.charAt(i)) * 0x100000001B3L;
+            hash[1] = (hash[1] ^ string.charAt(i)) * 0x9E3779B97F4A7C15L;
+        }
+        hash[0] = mix(hash[0] ^ string.length());
+        hash[1] = mix(hash[1] + string.length());
+    }
+
+    /**
+     * @param z value to mix
+     * @return z finalized with the splitmix64 mixer
+     */
+    public static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,17 +1,50 @@
 package unipi.di.socc.ramp.core.model;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.LinkedHashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import unipi.di.socc.ramp.core.model.exceptions.*;
 
 public class GlobalState {
     
     private Application app;
-    private final Map<String, NodeInstance> activeInstances;
-    private final Map<String, List<RuntimeBinding>> runtimeBindings;
+    private Map<String, NodeInstance> activeInstances;
+    private Map<String, List<RuntimeBinding>> runtimeBindings;
+    //true if activeInstances and runtimeBindings are persistent maps (see makePersistent)
+    private transient boolean persistent;
+    //undo log of the changes (null if changes are not recorded)
+    private transient Trail trail;
+    //see getFingerprint (valid only if fingerprinted)
+    private transient long fingerprintHigh;
+    private transient long fingerprintLow;
+    private transient boolean fingerprinted;
+    //(node type, capability) -> ids of the active instances offering it (null if not built, see buildIndexes)
+    private transient Map<NodeCap, TreeSet<String>> capabilityIndex;
+    //server id -> runtime bindings <requirement, client id> of the clients bound to it (null if not built, see buildIndexes)
+    private transient Map<String, List<RuntimeBinding>> reverseBindingIndex;
+    //ids of the broken instances (see isBrokenInstance), up to date except for those in changedInstances
+    //(null if not built, see buildIndexes)
+    private transient TreeSet<String> brokenInstances;
+    //instance id -> its pending faults (only if any), up to date except for those in changedInstances
+    private transient TreeMap<String, List<Fault>> pendingFaultsIndex;
+    //instance id -> ids of its satisfied requirements in the compiled protocol of its node (only if compiled),
+    //up to date except for those in changedInstances
+    private transient Map<String, BitSet> satisfiedIndex;
+    //ids of the instances whose state, runtime bindings or servers changed since the last refresh of
+    //brokenInstances, pendingFaultsIndex and satisfiedIndex (see refreshIndexes)
+    private transient Set<String> changedInstances;
+    //true if the indexes are shared with a fork (hence they must be copied before changing them)
+    private transient boolean indexesShared;
 
     public GlobalState(Application app) throws NullPointerException{
         if(app == null)
@@ -54,6 +87,495 @@ public class GlobalState {
         this.app = app;
     }
 
+    public Trail getTrail() {
+        return trail;
+    }
+    /**
+     * @param trail undo log where to record the next changes (null to stop recording)
+     */
+    public void setTrail(Trail trail) {
+        this.trail = trail;
+    }
+
+    //######################### RECORDED CHANGES ############################
+    /**
+     * @param instance active instance to move
+     * @param state new current state of the instance
+     */
+    public void setInstanceState(NodeInstance instance, String state){
+        String instanceID = instance.getID();
+
+        //instances are shared by the forks of a persistent global state, hence they are replaced
+        if(this.persistent){
+            NodeInstance oldInstance = this.activeInstances.get(instanceID);
+            NodeInstance newInstance = new NodeInstance(instance.getNodeType(), state, instanceID);
+            if(this.trail != null)
+                this.record(() -> {
+                    this.updateCapabilityIndex(newInstance, false);
+                    this.activeInstances.put(instanceID, oldInstance);
+                    this.updateCapabilityIndex(oldInstance, true);
+                });
+
+            this.updateCapabilityIndex(oldInstance, false);
+            this.activeInstances.put(instanceID, newInstance);
+            this.updateCapabilityIndex(newInstance, true);
+            this.updateFingerprint(instanceHash(oldInstance), -1);
+            this.updateFingerprint(instanceHash(newInstance), 1);
+            return;
+        }
+
+        String oldState = instance.getCurrentState();
+        if(this.trail != null)
+            this.record(() -> {
+                this.updateCapabilityIndex(instance, false);
+                instance.setCurrentState(oldState);
+                this.updateCapabilityIndex(instance, true);
+            });
+
+        this.updateFingerprint(instanceHash(instance), -1);
+        this.updateCapabilityIndex(instance, false);
+        instance.setCurrentState(state);
+        this.updateCapabilityIndex(instance, true);
+        this.updateFingerprint(instanceHash(instance), 1);
+    }
+
+    /**
+     * @param instance new instance to add to the active instances (with no runtime bindings)
+     */
+    public void addActiveInstance(NodeInstance instance){
+        String instanceID = instance.getID();
+        if(this.trail != null)
+            this.record(() -> {
+                this.updateCapabilityIndex(instance, false);
+                this.activeInstances.remove(instanceID);
+                this.runtimeBindings.remove(instanceID);
+            });
+
+        this.activeInstances.put(instanceID, instance);
+        this.runtimeBindings.put(instanceID, new ArrayList<RuntimeBinding>());
+        this.updateCapabilityIndex(instance, true);
+        this.updateFingerprint(instanceHash(instance), 1);
+    }
+
+    /**
+     * @param instanceID identifier of the instance to remove from the active instances (with its runtime bindings)
+     */
+    public void removeActiveInstance(String instanceID){
+        NodeInstance instance = this.activeInstances.get(instanceID);
+        List<RuntimeBinding> instanceRuntimeBindings = this.runtimeBindings.get(instanceID);
+        if(this.trail != null)
+            this.record(() -> {
+                if(instance != null){
+                    this.activeInstances.put(instanceID, instance);
+                    this.updateCapabilityIndex(instance, true);
+                }
+                if(instanceRuntimeBindings != null){
+                    this.runtimeBindings.put(instanceID, instanceRuntimeBindings);
+                    for(RuntimeBinding runtimeBinding : instanceRuntimeBindings)
+                        this.updateReverseBindingIndex(instanceID, runtimeBinding, true);
+                }
+            });
+
+        this.activeInstances.remove(instanceID);
+        this.runtimeBindings.remove(instanceID);
+        if(instance != null){
+            this.updateCapabilityIndex(instance, false);
+            this.updateFingerprint(instanceHash(instance), -1);
+        }
+        if(instanceRuntimeBindings != null){
+            for(int i = 0; i < instanceRuntimeBindings.size(); i++){
+                this.updateReverseBindingIndex(instanceID, instanceRuntimeBindings.get(i), false);
+                this.updateFingerprint(bindingHash(instanceID, instanceRuntimeBindings.get(i), i), -1);
+            }
+        }
+    }
+
+    //list of runtime bindings of instanceID that can be changed
+    //(binding lists are shared by the forks of a persistent global state, hence they are replaced)
+    private List<RuntimeBinding> changingBindings(String instanceID){
+        List<RuntimeBinding> bindings = this.runtimeBindings.get(instanceID);
+        if(!this.persistent)
+            return bindings;
+
+        if(this.trail != null)
+            this.record(() -> this.runtimeBindings.put(instanceID, bindings));
+        List<RuntimeBinding> newBindings = new ArrayList<>(bindings);
+        this.runtimeBindings.put(instanceID, newBindings);
+        return newBindings;
+    }
+
+    private void addBinding(String instanceID, RuntimeBinding runtimeBinding){
+        List<RuntimeBinding> bindings = this.changingBindings(instanceID);
+        if(this.trail != null && !this.persistent)
+            this.record(() -> bindings.remove(bindings.size() - 1));
+        if(this.trail != null)
+            this.record(() -> this.updateReverseBindingIndex(instanceID, runtimeBinding, false));
+
+        bindings.add(runtimeBinding);
+        this.updateReverseBindingIndex(instanceID, runtimeBinding, true);
+        this.updateFingerprint(bindingHash(instanceID, runtimeBinding, bindings.size() - 1), 1);
+    }
+
+    //removes the first occurrence of runtimeBinding
+    private void removeBinding(String instanceID, RuntimeBinding runtimeBinding){
+        int index = this.runtimeBindings.get(instanceID).indexOf(runtimeBinding);
+        if(index < 0)
+            return;
+
+        List<RuntimeBinding> bindings = this.changingBindings(instanceID);
+        if(this.trail != null && !this.persistent)
+            this.record(() -> bindings.add(index, runtimeBinding));
+        if(this.trail != null)
+            this.record(() -> this.updateReverseBindingIndex(instanceID, runtimeBinding, true));
+
+        //the bindings after the removed one move back by one position
+        for(int i = index; i < bindings.size(); i++)
+            this.updateFingerprint(bindingHash(instanceID, bindings.get(i), i), -1);
+        bindings.remove(index);
+        for(int i = index; i < bindings.size(); i++)
+            this.updateFingerprint(bindingHash(instanceID, bindings.get(i), i), 1);
+        this.updateReverseBindingIndex(instanceID, runtimeBinding, false);
+    }
+
+    private void clearBindings(String instanceID){
+        if(this.runtimeBindings.get(instanceID).isEmpty())
+            return;
+
+        List<RuntimeBinding> bindings = this.changingBindings(instanceID);
+        if(this.trail != null){
+            List<RuntimeBinding> oldBindings = new ArrayList<>(bindings);
+            this.record(() -> {
+                if(!this.persistent)
+                    bindings.addAll(oldBindings);
+                for(RuntimeBinding runtimeBinding : oldBindings)
+                    this.updateReverseBindingIndex(instanceID, runtimeBinding, true);
+            });
+        }
+
+        for(int i = 0; i < bindings.size(); i++){
+            this.updateReverseBindingIndex(instanceID, bindings.get(i), false);
+            this.updateFingerprint(bindingHash(instanceID, bindings.get(i), i), -1);
+        }
+        bindings.clear();
+    }
+
+    //records on the trail how to undo a change, which restores also the fingerprint before the change
+    //(hence it must be called before the change updates the fingerprint)
+    private void record(Runnable undo){
+        long oldFingerprintHigh = this.fingerprintHigh;
+        long oldFingerprintLow = this.fingerprintLow;
+        boolean oldFingerprinted = this.fingerprinted;
+
+        this.trail.record(() -> {
+            undo.run();
+            this.fingerprintHigh = oldFingerprintHigh;
+            this.fingerprintLow = oldFingerprintLow;
+            this.fingerprinted = oldFingerprinted;
+        });
+    }
+
+    //######################### INDEXES ############################
+
+    public boolean isIndexed() {
+        return this.capabilityIndex != null;
+    }
+
+    /**
+     * builds the index of the instances offering each capability, the index of the runtime bindings
+     * of each server (which also gives the containment tree) and the indexes of the broken instances, of
+     * the pending faults and of the satisfied requirements, which are then kept up to date by the recorded changes (hence, after this, the maps of the global
+     * state must not be changed directly)
+     */
+    public void buildIndexes(){
+        this.capabilityIndex = new HashMap<>();
+        this.reverseBindingIndex = new HashMap<>();
+        this.brokenInstances = new TreeSet<>();
+        this.pendingFaultsIndex = new TreeMap<>();
+        this.satisfiedIndex = new HashMap<>();
+        this.changedInstances = new HashSet<>();
+        this.indexesShared = false;
+        for(NodeInstance instance : this.activeInstances.values())
+            this.updateCapabilityIndex(instance, true);
+        for(Map.Entry<String, List<RuntimeBinding>> entry : this.runtimeBindings.entrySet()){
+            for(RuntimeBinding runtimeBinding : entry.getValue())
+                this.updateReverseBindingIndex(entry.getKey(), runtimeBinding, true);
+        }
+    }
+
+    /**
+     * @param nodeCap capability of a node type
+     * @return the ids (in ascending order) of the active instances of the node type of nodeCap
+     *   that currently offer its capability
+     */
+    public NavigableSet<String> getInstancesOffering(NodeCap nodeCap){
+        //no index: linear scan of the active instances
+        if(this.capabilityIndex == null){
+            TreeSet<String> offeringInstances = new TreeSet<>();
+            for(NodeInstance activeInstance : this.activeInstances.values()){
+                boolean instanceRightType = nodeCap.getNodeName().equals(activeInstance.getNodeType().getName());
+                boolean instanceOfferingCap = activeInstance.getOfferedCaps().contains(nodeCap.getCap());
+
+                if(instanceOfferingCap && instanceRightType)
+                    offeringInstances.add(activeInstance.getID());
+            }
+            return offeringInstances;
+        }
+
+        TreeSet<String> offeringInstances = this.capabilityIndex.get(nodeCap);
+        if(offeringInstances == null)
+            return Collections.emptyNavigableSet();
+        return Collections.unmodifiableNavigableSet(offeringInstances);
+    }
+
+    //adds (offering = true) or removes the instance from the capabilities it currently offers (if there is an index)
+    private void updateCapabilityIndex(NodeInstance instance, boolean offering){
+        if(this.capabilityIndex == null)
+            return;
+        this.unshareIndexes();
+
+        //adding, removing or moving an instance may break or fault it and the instances bound to it
+        this.changedInstances.add(instance.getID());
+        for(RuntimeBinding bindingTo : this.getBindingsTo(instance.getID()))
+            this.changedInstances.add(bindingTo.getNodeInstanceID());
+
+        String nodeTypeName = instance.getNodeType().getName();
+        for(String cap : instance.getOfferedCaps()){
+            NodeCap nodeCap = this.app.getTopology().getNodeCap(nodeTypeName, cap);
+            if(offering)
+                this.capabilityIndex.computeIfAbsent(nodeCap, key -> new TreeSet<>()).add(instance.getID());
+            else{
+                TreeSet<String> offeringInstances = this.capabilityIndex.get(nodeCap);
+                if(offeringInstances != null)
+                    offeringInstances.remove(instance.getID());
+            }
+        }
+    }
+
+    /**
+     * @param serverID identifier of an instance
+     * @return the runtime bindings <requirement, client id> of the instances bound to serverID
+     */
+    public List<RuntimeBinding> getBindingsTo(String serverID){
+        //no index: linear scan of the runtime bindings
+        if(this.reverseBindingIndex == null){
+            List<RuntimeBinding> bindingsTo = new ArrayList<>();
+            for(Map.Entry<String, List<RuntimeBinding>> entry : this.runtimeBindings.entrySet()){
+                for(RuntimeBinding runtimeBinding : entry.getValue()){
+                    if(runtimeBinding.getNodeInstanceID().equals(serverID))
+                        bindingsTo.add(new RuntimeBinding(runtimeBinding.getReq(), entry.getKey()));
+                }
+            }
+            return bindingsTo;
+        }
+
+        List<RuntimeBinding> bindingsTo = this.reverseBindingIndex.get(serverID);
+        if(bindingsTo == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(bindingsTo);
+    }
+
+    /**
+     * @param containerID identifier of an instance
+     * @return the ids of the instances directly contained in containerID
+     */
+    public List<String> getContainedInstances(String containerID){
+        List<String> containedInstances = new ArrayList<>();
+        for(RuntimeBinding bindingTo : this.getBindingsTo(containerID)){
+            if(bindingTo.getReq().isContainment())
+                containedInstances.add(bindingTo.getNodeInstanceID());
+        }
+        return containedInstances;
+    }
+
+    /**
+     * @param containerID identifier of an instance
+     * @return the ids of containerID and of all the instances (transitively) contained in it,
+     *   each container before the instances it contains
+     */
+    public Set<String> getContainmentSubtree(String containerID){
+        Set<String> subtree = new LinkedHashSet<>();
+        List<String> toVisit = new ArrayList<>();
+        toVisit.add(containerID);
+        while(!toVisit.isEmpty()){
+            String instanceID = toVisit.remove(toVisit.size() - 1);
+            if(subtree.add(instanceID))
+                toVisit.addAll(this.getContainedInstances(instanceID));
+        }
+        return subtree;
+    }
+
+    //adds (bound = true) or removes the runtime binding of clientID from the index of its server (if there is an index)
+    private void updateReverseBindingIndex(String clientID, RuntimeBinding runtimeBinding, boolean bound){
+        if(this.reverseBindingIndex == null)
+            return;
+        this.unshareIndexes();
+
+        this.changedInstances.add(clientID);
+
+        RuntimeBinding reverseBinding = new RuntimeBinding(runtimeBinding.getReq(), clientID);
+        if(bound)
+            this.reverseBindingIndex.computeIfAbsent(runtimeBinding.getNodeInstanceID(), id -> new ArrayList<>()).add(reverseBinding);
+        else{
+            List<RuntimeBinding> bindingsTo = this.reverseBindingIndex.get(runtimeBinding.getNodeInstanceID());
+            if(bindingsTo != null)
+                bindingsTo.remove(reverseBinding);
+        }
+    }
+
+    //updates the broken instances, the pending faults and the satisfied requirements of the changed instances
+    private void refreshIndexes(){
+        if(this.changedInstances.isEmpty())
+            return;
+        this.unshareIndexes();
+
+        for(String instanceID : this.changedInstances){
+            NodeInstance instance = this.activeInstances.get(instanceID);
+            if(instance != null && this.isBroken(instance))
+                this.brokenInstances.add(instanceID);
+            else
+                this.brokenInstances.remove(instanceID);
+
+            BitSet satisfied = instance != null ? this.satisfiedBits(instance) : null;
+            if(satisfied != null)
+                this.satisfiedIndex.put(instanceID, satisfied);
+            else
+                this.satisfiedIndex.remove(instanceID);
+
+            List<Fault> instancePendingFaults = instance != null ? this.pendingFaults(instance, satisfied) : Collections.emptyList();
+            if(instancePendingFaults.isEmpty())
+                this.pendingFaultsIndex.remove(instanceID);
+            else
+                this.pendingFaultsIndex.put(instanceID, Collections.unmodifiableList(instancePendingFaults));
+        }
+        this.changedInstances.clear();
+    }
+
+    //copies the indexes shared with a fork (so that they can be changed)
+    private void unshareIndexes(){
+        if(!this.indexesShared)
+            return;
+
+        Map<NodeCap, TreeSet<String>> copiedCapabilityIndex = new HashMap<>();
+        for(Map.Entry<NodeCap, TreeSet<String>> entry : this.capabilityIndex.entrySet())
+            copiedCapabilityIndex.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+        this.capabilityIndex = copiedCapabilityIndex;
+
+        Map<String, List<RuntimeBinding>> copiedReverseBindingIndex = new HashMap<>();
+        for(Map.Entry<String, List<RuntimeBinding>> entry : this.reverseBindingIndex.entrySet())
+            copiedReverseBindingIndex.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        this.reverseBindingIndex = copiedReverseBindingIndex;
+
+        this.brokenInstances = new TreeSet<>(this.brokenInstances);
+        this.pendingFaultsIndex = new TreeMap<>(this.pendingFaultsIndex);
+        this.satisfiedIndex = new HashMap<>(this.satisfiedIndex);
+        this.changedInstances = new HashSet<>(this.changedInstances);
+
+        this.indexesShared = false;
+    }
+
+    //######################### FINGERPRINT ############################
+
+    /**
+     * 128-bit fingerprint of the global state, as {high bits, low bits}
+     *   - it is the sum of the hashes of the active instances (id, node type, current state)
+     *     and of the runtime bindings (instance, requirement, server, position in the list of the
+     *     instance), hence it does not depend on the order of the instances, but it does depend on
+     *     the order of the runtime bindings of each instance (as removeRuntimeBinding removes the
+     *     last binding of a requirement)
+     *   - the changes update it in O(1), except for removing a runtime binding, which moves back
+     *     the following ones of the same instance
+     *   - equal global states have the same fingerprint, and different global states have the same
+     *     fingerprint with negligible probability
+     *   - it is computed from scratch the first time, then the recorded changes keep it up to date
+     *     (the maps of the global state must not be changed directly after that)
+     */
+    public long[] getFingerprint(){
+        if(!this.fingerprinted){
+            this.fingerprintHigh = 0;
+            this.fingerprintLow = 0;
+            this.fingerprinted = true;
+
+            for(NodeInstance instance : this.activeInstances.values())
+                this.updateFingerprint(instanceHash(instance), 1);
+            for(Map.Entry<String, List<RuntimeBinding>> entry : this.runtimeBindings.entrySet()){
+                for(int i = 0; i < entry.getValue().size(); i++)
+                    this.updateFingerprint(bindingHash(entry.getKey(), entry.getValue().get(i), i), 1);
+            }
+        }
+        return new long[]{ this.fingerprintHigh, this.fingerprintLow };
+    }
+
+    //adds (sign = 1) or removes (sign = -1) the hash of an element to the fingerprint
+    private void updateFingerprint(long[] hash, int sign){
+        if(!this.fingerprinted)
+            return;
+        this.fingerprintHigh += sign * hash[0];
+        this.fingerprintLow += sign * hash[1];
+    }
+
+    private static long[] instanceHash(NodeInstance instance){
+        return FingerprintHash.hash(INSTANCE_SEED, instance.getID(), instance.getNodeType().getName(), instance.getCurrentState());
+    }
+
+    private static long[] bindingHash(String instanceID, RuntimeBinding runtimeBinding, int position){
+        long[] hash = FingerprintHash.hash(BINDING_SEED, instanceID, runtimeBinding.getReq().getName(), runtimeBinding.getNodeInstanceID());
+        hash[0] = FingerprintHash.mix(hash[0] + position);
+        hash[1] = FingerprintHash.mix(hash[1] ^ position);
+        return hash;
+    }
+
+    private static final long INSTANCE_SEED = 0x9E3779B97F4A7C15L;
+    private static final long BINDING_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    //######################### PERSISTENT GLOBAL STATE ############################
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * moves the active instances and the runtime bindings to persistent maps, so that the global
+     * state can be forked in constant time (after this, instances and binding lists are never changed,
+     * they are replaced)
+     */
+    public void makePersistent(){
+        if(this.persistent)
+            return;
+
+        this.activeInstances = new PersistentHashMap<>(this.activeInstances);
+        this.runtimeBindings = new PersistentHashMap<>(this.runtimeBindings);
+        this.persistent = true;
+    }
+
+    /**
+     * @param app application of the forked global state
+     * @return a global state equal to this one, sharing with it all the (persistent) structure
+     */
+    public GlobalState fork(Application app){
+        if(!this.persistent)
+            throw new IllegalStateException("only persistent global states can be forked");
+
+        GlobalState forked = new GlobalState(app);
+        forked.activeInstances = ((PersistentHashMap<String, NodeInstance>) this.activeInstances).fork();
+        forked.runtimeBindings = ((PersistentHashMap<String, List<RuntimeBinding>>) this.runtimeBindings).fork();
+        forked.persistent = true;
+        forked.fingerprintHigh = this.fingerprintHigh;
+        forked.fingerprintLow = this.fingerprintLow;
+        forked.fingerprinted = this.fingerprinted;
+        //the indexes are copied by the first of the two global states that changes them
+        if(this.capabilityIndex != null){
+            forked.capabilityIndex = this.capabilityIndex;
+            forked.reverseBindingIndex = this.reverseBindingIndex;
+            forked.brokenInstances = this.brokenInstances;
+            forked.pendingFaultsIndex = this.pendingFaultsIndex;
+            forked.satisfiedIndex = this.satisfiedIndex;
+            forked.changedInstances = this.changedInstances;
+            forked.indexesShared = true;
+            this.indexesShared = true;
+        }
+        return forked;
+    }
+
     /**
      * @param instanceID id of the instance of which we want the satisfied requirement
      * @return list of requirements that are currently satisfied
@@ -67,14 +589,17 @@ public class GlobalState {
             IllegalArgumentException, 
             InstanceUnknownException
     {
-        Node instanceType = this.getNodeInstanceByID(instanceID).getNodeType();
-        List<RuntimeBinding> instanceRuntimeBindings = this.runtimeBindings.get(instanceID);
+        return this.satisfiedReqs(this.getNodeInstanceByID(instanceID));
+    }
+
+    private List<Requirement> satisfiedReqs(NodeInstance instance){
+        Node instanceType = instance.getNodeType();
+        List<RuntimeBinding> instanceRuntimeBindings = this.runtimeBindings.get(instance.getID());
 
         List<Requirement> satisfiedReqs = new ArrayList<>();
 
         for(RuntimeBinding rb : instanceRuntimeBindings){
-            NodeReq nodeReq = new NodeReq(instanceType.getName(), rb.getReq().getName());
-            NodeCap nodeCap = this.app.getBindingFunction().get(nodeReq);
+            NodeCap nodeCap = this.app.getTopology().getStaticBinding(instanceType.getName(), rb.getReq().getName());
 
             //the binding is defined in the static topology
             if(nodeCap != null){ 
@@ -86,7 +611,7 @@ public class GlobalState {
                         * it is not enough to have a runtime binding to have a satisfied requirement
                     */
                     boolean serverRightType = nodeCap.getNodeName().equals(server.getNodeType().getName());
-                    boolean serverOfferingCap = server.getOfferedCaps().contains(nodeCap.getCap());
+                    boolean serverOfferingCap = server.isOffering(nodeCap.getCap());
 
                     if(serverOfferingCap && serverRightType)
                         satisfiedReqs.add(rb.getReq());
@@ -96,6 +621,32 @@ public class GlobalState {
         return satisfiedReqs;
     }
 
+    //ids of the satisfied requirements of instance (null if its protocol is not compiled
+    //or if some satisfied requirement is not a requirement of its protocol)
+    private BitSet satisfiedBits(NodeInstance instance){
+        CompiledProtocol compiled = instance.getNodeType().getManProtocol().getCompiled();
+        if(compiled == null)
+            return null;
+
+        BitSet satisfiedBits = new BitSet();
+        for(Requirement satisfiedReq : this.satisfiedReqs(instance)){
+            int reqID = compiled.getReqID(satisfiedReq);
+            if(reqID < 0)
+                return null;
+            satisfiedBits.set(reqID);
+        }
+        return satisfiedBits;
+    }
+
+    //as satisfiedBits, from the index if there is one (the result must not be changed)
+    private BitSet getSatisfiedBits(NodeInstance instance){
+        if(this.satisfiedIndex == null)
+            return this.satisfiedBits(instance);
+
+        this.refreshIndexes();
+        return this.satisfiedIndex.get(instance.getID());
+    }
+
     /**
      * @param instanceID identifier of the instance
      * @param req requirement of the instance
@@ -112,22 +663,13 @@ public class GlobalState {
     {   
         List<NodeInstance> capableactiveInstances = new ArrayList<>();
 
-        NodeReq nodeReq = new NodeReq(this.getNodeInstanceByID(instanceID).getNodeType().getName(), req.getName());
-        NodeCap nodeCap = this.app.getBindingFunction().get(nodeReq);
-
-        if(nodeCap != null){            
-            /**
-             * among all the currently active activeInstances we check if the active instance is the right kind of node 
-             * and if it is currently offering the needed capability. If so the instance is a "capable instance", 
-             * whereas it could satisfy the requirement of the given instance
-             */
-            for(NodeInstance activeInstance : this.activeInstances.values()){
-                boolean instanceRightType = nodeCap.getNodeName().equals(activeInstance.getNodeType().getName());
-                boolean instanceOfferingCap = activeInstance.getOfferedCaps().contains(nodeCap.getCap());
+        NodeCap nodeCap = this.app.getTopology().getStaticBinding(this.getNodeInstanceByID(instanceID).getNodeType().getName(), req.getName());
 
-                if(instanceOfferingCap && instanceRightType)
-                    capableactiveInstances.add(activeInstance);
-            }
+        //the active instances of the right kind of node that are currently offering the needed capability
+        //are "capable instances", whereas they could satisfy the requirement of the given instance
+        if(nodeCap != null){
+            for(String capableInstanceID : this.getInstancesOffering(nodeCap))
+                capableactiveInstances.add(this.activeInstances.get(capableInstanceID));
         }
         return capableactiveInstances;
     }
@@ -164,7 +706,7 @@ public class GlobalState {
 
         //cant make a remove inside an iterator
         if(badBinding != null)
-            instanceRuntimeBindings.remove(badBinding);
+            this.removeBinding(instanceID, badBinding);
     }
 
     /**
@@ -181,9 +723,15 @@ public class GlobalState {
             InstanceUnknownException
     {
         NodeInstance instance = this.getNodeInstanceByID(instanceID);
+        CompiledProtocol compiled = instance.getNodeType().getManProtocol().getCompiled();
         List<Requirement> neededReqs = instance.getNeededReqs();
         for(Requirement satisfiedReq : this.getSatisfiedReqs(instanceID)){
-            if(!satisfiedReq.isContainment() && !neededReqs.contains(satisfiedReq))
+            //rho bitset of the compiled protocol
+            boolean needed = compiled != null 
+                ? compiled.isNeeded(instance.getCurrentState(), satisfiedReq) 
+                : neededReqs.contains(satisfiedReq);
+
+            if(!satisfiedReq.isContainment() && !needed)
                 this.removeRuntimeBinding(instanceID, satisfiedReq);
         }
     }
@@ -201,7 +749,7 @@ public class GlobalState {
             InstanceUnknownException
     {
         this.getNodeInstanceByID(instanceID);
-        this.runtimeBindings.get(instanceID).clear();
+        this.clearBindings(instanceID);
     }
 
     /**
@@ -221,28 +769,11 @@ public class GlobalState {
         this.getNodeInstanceByID(instanceID);
 
         //direct way: remove all the runtime bindings about the requirement of instance(ID)
-        this.runtimeBindings.get(instanceID).clear();
-
-        /**
-         * reverse way: we remove all the runtkme bindings that have instance(ID) as a server of a capability
-         * for each active instance i we check all of its runtime binding, when
-         * we find a runtime binding that has instanceID as a server we remove the binding
-         */
-        List<RuntimeBinding> badBindings = new ArrayList<>();
-        for(NodeInstance activeInstance : this.activeInstances.values()){
-            List<RuntimeBinding> activeInstanceRunBindings = this.runtimeBindings.get(activeInstance.getID());
-
-            for(RuntimeBinding activeInsanceRunBinding : activeInstanceRunBindings){
-                //instance(ID) is a server for another instance
-                if(activeInsanceRunBinding.getNodeInstanceID().equals(instanceID))
-                    badBindings.add(activeInsanceRunBinding);
-            }
+        this.clearBindings(instanceID);
 
-            for(RuntimeBinding badBinding : badBindings)
-                activeInstanceRunBindings.remove(badBinding);
-                
-            badBindings.clear();
-        }
+        //reverse way: we remove all the runtime bindings that have instance(ID) as a server of a capability
+        for(RuntimeBinding bindingTo : new ArrayList<>(this.getBindingsTo(instanceID)))
+            this.removeBinding(bindingTo.getNodeInstanceID(), new RuntimeBinding(bindingTo.getReq(), instanceID));
     }
 
     /**
@@ -264,7 +795,7 @@ public class GlobalState {
         if(req == null)
             throw new NullPointerException();
             
-        this.runtimeBindings.get(instanceID).add(new RuntimeBinding(req, serverID));
+        this.addBinding(instanceID, new RuntimeBinding(req, serverID));
     }
 
     /**
@@ -280,11 +811,17 @@ public class GlobalState {
             InstanceUnknownException
     {
         NodeInstance instance = this.getNodeInstanceByID(instanceID);
-        List<Requirement> satisfiedReq = this.getSatisfiedReqs(instanceID);
+        CompiledProtocol compiled = instance.getNodeType().getManProtocol().getCompiled();
+        BitSet satisfiedBits = this.getSatisfiedBits(instance);
+        List<Requirement> satisfiedReq = satisfiedBits == null ? this.getSatisfiedReqs(instanceID) : null;
 
         for(Requirement neededReq : instance.getNeededReqs()){
+            boolean satisfied = satisfiedBits != null 
+                ? satisfiedBits.get(compiled.getReqID(neededReq)) 
+                : satisfiedReq.contains(neededReq);
+
             //the needed requirement is not containmenet and it is not satisfied
-            if(!neededReq.isContainment() && !satisfiedReq.contains(neededReq)){
+            if(!neededReq.isContainment() && !satisfied){
                 NodeInstance server = this.app.pi(instanceID, neededReq);
                 //we satisfy what we can, but it is possible to have some not satisfied reqs
                 if(server != null)
@@ -308,25 +845,37 @@ public class GlobalState {
             InstanceUnknownException
     {
         NodeInstance instance = this.getNodeInstanceByID(instanceID);
+
+        //no index: computed from scratch
+        if(this.pendingFaultsIndex == null)
+            return this.pendingFaults(instance, null);
+
+        this.refreshIndexes();
+        return new ArrayList<>(this.pendingFaultsIndex.getOrDefault(instanceID, Collections.emptyList()));
+    }
+
+    //satisfiedBits: ids of the satisfied requirements of instance (null if not available, see satisfiedBits)
+    private List<Fault> pendingFaults(NodeInstance instance, BitSet satisfiedBits){
+        String instanceID = instance.getID();
         List<Fault> pendingFaults = new ArrayList<>();
+        CompiledProtocol compiled = instance.getNodeType().getManProtocol().getCompiled();
+        List<Requirement> satisfiedReqs = null;
 
         //for each needed requirement (non containment), if it is not satisfied we have a fault
         for(Requirement neededReq : instance.getNeededReqs()){
-            // if(!neededReq.isContainment() && !this.getSatisfiedReqs(instanceID).contains(neededReq))
-            //     pendingFaults.add(new Fault(instanceID, neededReq));
-
             if(!neededReq.isContainment()){
-                boolean satisfied = false;
-                for(Requirement r : this.getSatisfiedReqs(instanceID)){
-                    if(r.getName().equals(neededReq.getName()))
+                //the bit of the requirement, otherwise a requirement with its name
+                boolean satisfied = satisfiedBits != null && satisfiedBits.get(compiled.getReqID(neededReq));
+                if(!satisfied && satisfiedReqs == null)
+                    satisfiedReqs = this.satisfiedReqs(instance);
+                for(int i = 0; !satisfied && i < satisfiedReqs.size(); i++){
+                    if(satisfiedReqs.get(i).getName().equals(neededReq.getName()))
                         satisfied = true;
                 }
 
                 if(!satisfied)
                     pendingFaults.add(new Fault(instanceID, neededReq));
-
             }
-
         }
 
         return pendingFaults;
@@ -343,9 +892,17 @@ public class GlobalState {
     {
         List<Fault> pendingFaults = new ArrayList<>();
 
-        for(NodeInstance activeInstance : this.activeInstances.values())
-            pendingFaults.addAll(this.getPendingFaults(activeInstance.getID()));
+        //no index: linear scan of the active instances
+        if(this.pendingFaultsIndex == null){
+            for(NodeInstance activeInstance : this.activeInstances.values())
+                pendingFaults.addAll(this.getPendingFaults(activeInstance.getID()));
+            return pendingFaults;
+        }
 
+        //only the faulted instances
+        this.refreshIndexes();
+        for(List<Fault> instancePendingFaults : this.pendingFaultsIndex.values())
+            pendingFaults.addAll(instancePendingFaults);
         return pendingFaults;
     }
 
@@ -363,7 +920,10 @@ public class GlobalState {
             IllegalArgumentException, 
             InstanceUnknownException
     {
-        NodeInstance instance = this.getNodeInstanceByID(instanceID);
+        return this.isBroken(this.getNodeInstanceByID(instanceID));
+    }
+
+    private boolean isBroken(NodeInstance instance){
         Requirement containmentReq = null;
 
         for(Requirement req : instance.getNodeType().getReqs()){
@@ -375,7 +935,7 @@ public class GlobalState {
         if(containmentReq == null)
             return false;
 
-        List<RuntimeBinding> instanceRuntimeBindings = this.runtimeBindings.get(instanceID);
+        List<RuntimeBinding> instanceRuntimeBindings = this.runtimeBindings.get(instance.getID());
         for(RuntimeBinding runtimeBinding : instanceRuntimeBindings){
             if(runtimeBinding.getReq().equals(containmentReq)){
                 //destroyed container
@@ -402,10 +962,17 @@ public class GlobalState {
     {
         List<NodeInstance> brokenInstances = new ArrayList<>();
 
-        for(NodeInstance instance : this.activeInstances.values())
-            if(this.isBrokenInstance(instance.getID()))
-                brokenInstances.add(instance);
+        //no index: linear scan of the active instances
+        if(this.brokenInstances == null){
+            for(NodeInstance instance : this.activeInstances.values())
+                if(this.isBrokenInstance(instance.getID()))
+                    brokenInstances.add(instance);
+            return brokenInstances;
+        }
 
+        this.refreshIndexes();
+        for(String instanceID : this.brokenInstances)
+            brokenInstances.add(this.activeInstances.get(instanceID));
         return brokenInstances;
     }
 
@@ -431,22 +998,10 @@ public class GlobalState {
         if(!fault.getReq().isReplicaUnaware())
             return false;
 
-        NodeReq nodeReq = new NodeReq(instance.getNodeType().getName(), fault.getReq().getName());
-        NodeCap nodeCap = this.app.getBindingFunction().get(nodeReq);
+        NodeCap nodeCap = this.app.getTopology().getStaticBinding(instance.getNodeType().getName(), fault.getReq().getName());
 
-        if(nodeCap != null){
-            for(NodeInstance activeInstance : this.activeInstances.values()){
-                
-                boolean instanceRightType = nodeCap.getNodeName().equals(activeInstance.getNodeType().getName());
-                boolean instanceOfferingCap = activeInstance.getOfferedCaps().contains(nodeCap.getCap());
-
-                //found at least one node instance that can resolve the fault
-                if(instanceOfferingCap && instanceRightType)
-                    return true;
-                
-            }
-        }
-        return false;
+        //resolvable if at least one node instance can resolve the fault
+        return nodeCap != null && !this.getInstancesOffering(nodeCap).isEmpty();
     }
 
     /**
@@ -485,9 +1040,18 @@ public class GlobalState {
     {
         List<Fault> resolvableFaults = new ArrayList<>();
 
-        for(NodeInstance activeInstance : this.activeInstances.values())
-            resolvableFaults.addAll(this.getResolvableFaults(activeInstance.getID()));
+        //no index: linear scan of the active instances
+        if(this.pendingFaultsIndex == null){
+            for(NodeInstance activeInstance : this.activeInstances.values())
+                resolvableFaults.addAll(this.getResolvableFaults(activeInstance.getID()));
+            return resolvableFaults;
+        }
 
+        //only the pending faults
+        for(Fault fault : this.getPendingFaults()){
+            if(this.isResolvableFault(fault))
+                resolvableFaults.add(fault);
+        }
         return resolvableFaults;
     }
 
@@ -505,4 +1069,9 @@ public class GlobalState {
 
     }
 
+    @Override
+    public int hashCode(){
+        return Long.hashCode(this.getFingerprint()[1]);
+    }
+
 }
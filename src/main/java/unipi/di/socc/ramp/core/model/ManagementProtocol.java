@@ -1,6 +1,8 @@
 package unipi.di.socc.ramp.core.model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +23,16 @@ public class ManagementProtocol {
     //state s -> reachable fault states from s 
     private final Map<String, List<String>> phi;
 
+    //read-only views of the above (the lists of rho, gamma and phi can be changed, see ProtocolList)
+    private final Map<String, Transition> transitionsView;
+    private final List<String> statesView;
+    private final Map<String, List<Requirement>> rhoView;
+    private final Map<String, List<String>> gammaView;
+    private final Map<String, List<String>> phiView;
+
+    //compiled form of the protocol (null if not compiled or changed since, see compile)
+    private CompiledProtocol compiled;
+
     /**
      * mind that transitions are also states (and in fact can be seen as strings)
         * thus a transitions can need requirements and induce capabilities 
@@ -41,6 +53,11 @@ public class ManagementProtocol {
         this.phi = new HashMap<String, List<String>>();
         this.rho = new HashMap<String, List<Requirement>>();
         this.states = new ArrayList<String>();
+        this.transitionsView = Collections.unmodifiableMap(this.transitions);
+        this.statesView = Collections.unmodifiableList(this.states);
+        this.rhoView = Collections.unmodifiableMap(this.rho);
+        this.gammaView = Collections.unmodifiableMap(this.gamma);
+        this.phiView = Collections.unmodifiableMap(this.phi);
         this.initialState = initialState;
         this.addState(this.initialState);
     }
@@ -57,23 +74,85 @@ public class ManagementProtocol {
             throw new IllegalArgumentException();
         
         if(!this.states.contains(state)){
+            this.compiled = null;
             this.states.add(state);
-            this.rho.put(state, new ArrayList<>());
-            this.gamma.put(state, new ArrayList<>());
-            this.phi.put(state, new ArrayList<>());
+            this.rho.put(state, new ProtocolList<>());
+            this.gamma.put(state, new ProtocolList<>());
+            this.phi.put(state, new ProtocolList<>());
         }
     }
 
     public void addTransition(String startState, String op, String endState){
         Transition t = new Transition(startState, op, endState);
+        this.compiled = null;
         this.transitions.put(t.getName(), t);
         this.addState(t.getName());
     }
 
+    /**
+     * compiles the protocol into the tables used by the model rules (any later change of the protocol,
+     * or of the requirements of its node, discards them)
+     * @param nodeReqs requirements of the node of the protocol
+     */
+    public void compile(List<Requirement> nodeReqs){
+        if(this.compiled == null || !this.compiled.isCompiledFor(nodeReqs))
+            this.compiled = new CompiledProtocol(this, nodeReqs);
+    }
+
+    /**
+     * @return the compiled form of the protocol (null if not compiled, or if changed since)
+     */
+    public CompiledProtocol getCompiled() {
+        return this.compiled;
+    }
+
+    //discards the compiled form of the protocol
+    void clearCompiled(){
+        this.compiled = null;
+    }
+
+    //list of rho, gamma or phi, whose changes discard the compiled form of the protocol
+    //(AbstractList routes all of its changes through set, add and remove)
+    private class ProtocolList<E> extends AbstractList<E> {
+        private final List<E> elements = new ArrayList<>();
+
+        @Override
+        public E get(int index){
+            return this.elements.get(index);
+        }
+
+        @Override
+        public int size(){
+            return this.elements.size();
+        }
+
+        @Override
+        public E set(int index, E element){
+            clearCompiled();
+            return this.elements.set(index, element);
+        }
+
+        @Override
+        public void add(int index, E element){
+            clearCompiled();
+            this.elements.add(index, element);
+            this.modCount++;
+        }
+
+        @Override
+        public E remove(int index){
+            clearCompiled();
+            this.modCount++;
+            return this.elements.remove(index);
+        }
+    }
+
     @Override
     public boolean equals(Object obj){
         if(obj == null)
             throw new NullPointerException();
+        if(this == obj)
+            return true;
         
         ManagementProtocol mp = (ManagementProtocol) obj;
         return 
@@ -91,20 +170,22 @@ public class ManagementProtocol {
         return Objects.hash(this.transitions, this.rho, this.gamma, this.phi);
     }
 
+    //the states and the transitions are added by addState and addTransition, while the lists of
+    //rho, gamma and phi can be changed directly
     public Map<String, Transition> getTransitions() {
-        return this.transitions;
+        return this.transitionsView;
     }
     public Map<String, List<String>> getPhi() {
-        return this.phi;
+        return this.phiView;
     }
     public Map<String, List<String>> getGamma() {
-        return this.gamma;
+        return this.gammaView;
     }
     public Map<String, List<Requirement>> getRho() {
-        return this.rho;
+        return this.rhoView;
     }
     public List<String> getStates(){
-        return this.states;
+        return this.statesView;
     }
     public String getInitialState(){
         return this.initialState;
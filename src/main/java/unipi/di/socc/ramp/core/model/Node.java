@@ -1,6 +1,7 @@
 package unipi.di.socc.ramp.core.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -9,6 +10,8 @@ public class Node {
     private final String name;
     private final ManagementProtocol manProtocol;
     private final List<Requirement> reqs;
+    //read-only view of reqs (the requirements are added by addRequirement, see ManagementProtocol.compile)
+    private final List<Requirement> reqsView;
     private final List<String> caps;
     private final List<String> ops;
 
@@ -31,7 +34,8 @@ public class Node {
 
         this.name = name;
         this.manProtocol = manProtocol;
-        this.reqs = reqs;
+        this.reqs = new ArrayList<>(reqs);
+        this.reqsView = Collections.unmodifiableList(this.reqs);
         this.caps = caps;
         this.ops = ops;
     }
@@ -53,6 +57,7 @@ public class Node {
         this.caps = new ArrayList<String>();
         this.ops = new ArrayList<String>();
         this.reqs = new ArrayList<Requirement>();
+        this.reqsView = Collections.unmodifiableList(this.reqs);
     }
 
     public void addOperation(String op){
@@ -69,6 +74,8 @@ public class Node {
             throw new NullPointerException();
         
         this.reqs.add(req);
+        //the compiled protocol numbers the requirements of the node
+        this.manProtocol.clearCompiled();
     }
 
     public void addCapability(String cap){
@@ -84,6 +91,8 @@ public class Node {
     public boolean equals(Object obj){
         if(obj == null)
             throw new NullPointerException();
+        if(this == obj)
+            return true;
 
         Node check = (Node) obj;
         return
@@ -114,7 +123,7 @@ public class Node {
         return caps;
     }
     public List<Requirement> getReqs() {
-        return reqs;
+        return reqsView;
     }
     public ManagementProtocol getManProtocol() {
         return manProtocol;
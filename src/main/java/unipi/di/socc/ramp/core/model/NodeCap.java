@@ -50,6 +50,8 @@ public class NodeCap {
     public boolean equals(Object obj){
         if(obj == null)
             throw new NullPointerException();
+        if(this == obj)
+            return true;
             
         NodeCap nc = (NodeCap) obj;
         return this.nodeName.equals(nc.getNodeName()) && this.capName.equals(nc.getCap());
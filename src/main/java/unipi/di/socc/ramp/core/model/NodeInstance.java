@@ -59,6 +59,12 @@ public class NodeInstance {
     public List<String> getOfferedCaps(){
         return this.nodeType.getManProtocol().getGamma().get(this.currentState);
     }
+    public boolean isOffering(String cap){
+        CompiledProtocol compiled = this.nodeType.getManProtocol().getCompiled();
+        if(compiled != null)
+            return compiled.isOffered(this.currentState, cap);
+        return this.getOfferedCaps().contains(cap);
+    }
     
     //return the list of transition that could be performed in the current state
     public List<Transition> getPossibleTransitions(){
@@ -79,6 +85,11 @@ public class NodeInstance {
         if(op.isBlank())
             throw new IllegalArgumentException();
 
+        //(state, op) table of the compiled protocol
+        CompiledProtocol compiled = this.nodeType.getManProtocol().getCompiled();
+        if(compiled != null)
+            return compiled.getTransition(this.currentState, op);
+
         Transition t = null;
         for(Transition possibileTransition : this.getPossibleTransitions()){
             if(possibileTransition.getOp().equals(op)){
@@ -93,12 +104,15 @@ public class NodeInstance {
 
     @Override
     public int hashCode(){
-        return Objects.hash(this.currentState, this.id, this.nodeType);
+        //the node type is identified by its name (hashing the whole node would hash its protocol)
+        return Objects.hash(this.currentState, this.id, this.nodeType.getName());
     }
     @Override
     public boolean equals(Object obj){
         if(obj == null)
             throw new NullPointerException();
+        if(this == obj)
+            return true;
 
         NodeInstance instance = (NodeInstance) obj;
         return 
@@ -48,6 +48,8 @@ public class NodeReq {
     public boolean equals(Object obj){
         if(obj == null)
             throw new NullPointerException();
+        if(this == obj)
+            return true;
             
         NodeReq nr = (NodeReq) obj;
         return this.nodeName.equals(nr.getNodeName()) && this.reqName.equals(nr.getReqName());
@@ -0,0 +1,356 @@
+package unipi.di.socc.ramp.core.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * map backed by a persistent hash array mapped trie (HAMT)
+    * the trie is never modified: put and remove build a new trie that shares with the old one
+      all the nodes but those on the path to the changed entry (O(log n) new nodes)
+    * fork() returns in O(1) another map with the same entries, and the changes of each of the two
+      maps are not visible to the other one
+    * a map is not thread safe, but different maps sharing the same nodes can be used concurrently
+ */
+
+public class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    //null (empty map), a Leaf, a Collision or a Branch
+    private Object root;
+    private int size;
+
+    public PersistentHashMap(){
+        this.root = null;
+        this.size = 0;
+    }
+
+    public PersistentHashMap(Map<? extends K, ? extends V> map){
+        this();
+        this.putAll(map);
+    }
+
+    private PersistentHashMap(Object root, int size){
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return a map with the same entries of this map, sharing with it the whole trie
+     */
+    public PersistentHashMap<K, V> fork(){
+        return new PersistentHashMap<>(this.root, this.size);
+    }
+
+    //#region MAP
+
+    @Override
+    public int size(){
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key){
+        return find(this.root, hash(key), key, 0) != null;
+    }
+
+    @Override
+    public V get(Object key){
+        Leaf<K, V> leaf = find(this.root, hash(key), key, 0);
+        return leaf == null ? null : leaf.getValue();
+    }
+
+    @Override
+    public V put(K key, V value){
+        Leaf<K, V> old = find(this.root, hash(key), key, 0);
+        this.root = insert(this.root, new Leaf<>(hash(key), key, value), 0);
+        if(old == null){
+            this.size++;
+            return null;
+        }
+        return old.getValue();
+    }
+
+    @Override
+    public V remove(Object key){
+        int hash = hash(key);
+        Leaf<K, V> old = find(this.root, hash, key, 0);
+        if(old == null)
+            return null;
+
+        this.root = delete(this.root, hash, key, 0);
+        this.size--;
+        return old.getValue();
+    }
+
+    @Override
+    public void clear(){
+        this.root = null;
+        this.size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet(){
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator(){
+                return new LeafIterator(PersistentHashMap.this.root);
+            }
+            @Override
+            public int size(){
+                return PersistentHashMap.this.size;
+            }
+        };
+    }
+
+    //#endregion
+
+    //#region TRIE
+
+    private static int hash(Object key){
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private static int index(int hash, int shift){
+        return (hash >>> shift) & MASK;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Leaf<K, V> find(Object node, int hash, Object key, int shift){
+        while(node instanceof Branch){
+            Branch branch = (Branch) node;
+            int bit = 1 << index(hash, shift);
+            if((branch.bitmap & bit) == 0)
+                return null;
+
+            node = branch.children[Integer.bitCount(branch.bitmap & (bit - 1))];
+            shift += BITS;
+        }
+
+        if(node instanceof Leaf){
+            Leaf<K, V> leaf = (Leaf<K, V>) node;
+            return (leaf.hash == hash && Objects.equals(leaf.getKey(), key)) ? leaf : null;
+        }
+        if(node instanceof Collision){
+            Collision collision = (Collision) node;
+            if(collision.hash != hash)
+                return null;
+            for(Leaf<?, ?> leaf : collision.leaves){
+                if(Objects.equals(leaf.getKey(), key))
+                    return (Leaf<K, V>) leaf;
+            }
+        }
+        return null;
+    }
+
+    //node (rooted at depth shift) with leaf added (or replacing the leaf with the same key)
+    private static Object insert(Object node, Leaf<?, ?> leaf, int shift){
+        if(node == null)
+            return leaf;
+
+        if(node instanceof Branch){
+            Branch branch = (Branch) node;
+            int bit = 1 << index(leaf.hash, shift);
+            int position = Integer.bitCount(branch.bitmap & (bit - 1));
+
+            if((branch.bitmap & bit) == 0){
+                Object[] children = new Object[branch.children.length + 1];
+                System.arraycopy(branch.children, 0, children, 0, position);
+                children[position] = leaf;
+                System.arraycopy(branch.children, position, children, position + 1, branch.children.length - position);
+                return new Branch(branch.bitmap | bit, children);
+            }
+
+            Object[] children = branch.children.clone();
+            children[position] = insert(branch.children[position], leaf, shift + BITS);
+            return new Branch(branch.bitmap, children);
+        }
+
+        int nodeHash = hashOf(node);
+        if(nodeHash != leaf.hash)
+            return merge(node, nodeHash, leaf, leaf.hash, shift);
+
+        //same hash: replace the leaf or add it to the collision
+        if(node instanceof Leaf){
+            Leaf<?, ?> other = (Leaf<?, ?>) node;
+            if(Objects.equals(other.getKey(), leaf.getKey()))
+                return leaf;
+            return new Collision(leaf.hash, new Leaf<?, ?>[]{ other, leaf });
+        }
+
+        Collision collision = (Collision) node;
+        for(int i = 0; i < collision.leaves.length; i++){
+            if(Objects.equals(collision.leaves[i].getKey(), leaf.getKey())){
+                Leaf<?, ?>[] leaves = collision.leaves.clone();
+                leaves[i] = leaf;
+                return new Collision(collision.hash, leaves);
+            }
+        }
+        Leaf<?, ?>[] leaves = new Leaf<?, ?>[collision.leaves.length + 1];
+        System.arraycopy(collision.leaves, 0, leaves, 0, collision.leaves.length);
+        leaves[collision.leaves.length] = leaf;
+        return new Collision(collision.hash, leaves);
+    }
+
+    //branch (rooted at depth shift) containing two leaves or collisions with different hashes
+    private static Object merge(Object node1, int hash1, Object node2, int hash2, int shift){
+        int index1 = index(hash1, shift);
+        int index2 = index(hash2, shift);
+
+        if(index1 == index2)
+            return new Branch(1 << index1, new Object[]{ merge(node1, hash1, node2, hash2, shift + BITS) });
+        if(index1 < index2)
+            return new Branch((1 << index1) | (1 << index2), new Object[]{ node1, node2 });
+        return new Branch((1 << index1) | (1 << index2), new Object[]{ node2, node1 });
+    }
+
+    //node (rooted at depth shift) without the leaf of key (which is in node)
+    private static Object delete(Object node, int hash, Object key, int shift){
+        if(node instanceof Leaf)
+            return null;
+
+        if(node instanceof Collision){
+            Collision collision = (Collision) node;
+            Leaf<?, ?>[] leaves = new Leaf<?, ?>[collision.leaves.length - 1];
+            int i = 0;
+            for(Leaf<?, ?> leaf : collision.leaves){
+                if(!Objects.equals(leaf.getKey(), key))
+                    leaves[i++] = leaf;
+            }
+            return leaves.length == 1 ? leaves[0] : new Collision(collision.hash, leaves);
+        }
+
+        Branch branch = (Branch) node;
+        int bit = 1 << index(hash, shift);
+        int position = Integer.bitCount(branch.bitmap & (bit - 1));
+        Object child = delete(branch.children[position], hash, key, shift + BITS);
+
+        if(child == null){
+            if(branch.children.length == 1)
+                return null;
+
+            Object[] children = new Object[branch.children.length - 1];
+            System.arraycopy(branch.children, 0, children, 0, position);
+            System.arraycopy(branch.children, position + 1, children, position, children.length - position);
+            //a single leaf (or collision) does not need a branch
+            if(children.length == 1 && !(children[0] instanceof Branch))
+                return children[0];
+            return new Branch(branch.bitmap & ~bit, children);
+        }
+
+        if(branch.children.length == 1 && !(child instanceof Branch))
+            return child;
+
+        Object[] children = branch.children.clone();
+        children[position] = child;
+        return new Branch(branch.bitmap, children);
+    }
+
+    private static int hashOf(Object node){
+        if(node instanceof Leaf)
+            return ((Leaf<?, ?>) node).hash;
+        return ((Collision) node).hash;
+    }
+
+    private static final class Leaf<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int hash;
+
+        private Leaf(int hash, K key, V value){
+            super(key, value);
+            this.hash = hash;
+        }
+    }
+
+    //leaves with different keys and the same hash
+    private static final class Collision {
+        private final int hash;
+        private final Leaf<?, ?>[] leaves;
+
+        private Collision(int hash, Leaf<?, ?>[] leaves){
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+    }
+
+    private static final class Branch {
+        //bit i is set if the i-th child (w.r.t. the hash bits of this depth) exists
+        private final int bitmap;
+        private final Object[] children;
+
+        private Branch(int bitmap, Object[] children){
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    //visits the leaves of a trie (that is never modified, hence removing from the map is safe)
+    private class LeafIterator implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Object> toVisit;
+        private Leaf<K, V> next;
+        private Leaf<K, V> last;
+
+        private LeafIterator(Object root){
+            this.toVisit = new ArrayDeque<>();
+            if(root != null)
+                this.toVisit.push(root);
+            this.advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance(){
+            this.next = null;
+            while(this.next == null && !this.toVisit.isEmpty()){
+                Object node = this.toVisit.pop();
+                if(node instanceof Leaf)
+                    this.next = (Leaf<K, V>) node;
+                else if(node instanceof Collision){
+                    Leaf<?, ?>[] leaves = ((Collision) node).leaves;
+                    for(int i = leaves.length - 1; i >= 0; i--)
+                        this.toVisit.push(leaves[i]);
+                }
+                else{
+                    Object[] children = ((Branch) node).children;
+                    for(int i = children.length - 1; i >= 0; i--)
+                        this.toVisit.push(children[i]);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext(){
+            return this.next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next(){
+            if(this.next == null)
+                throw new NoSuchElementException();
+
+            this.last = this.next;
+            this.advance();
+            return this.last;
+        }
+
+        @Override
+        public void remove(){
+            if(this.last == null)
+                throw new IllegalStateException();
+
+            PersistentHashMap.this.remove(this.last.getKey());
+            this.last = null;
+        }
+    }
+
+    //#endregion
+}
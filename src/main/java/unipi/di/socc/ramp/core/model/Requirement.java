@@ -47,6 +47,8 @@ public class Requirement {
     public boolean equals(Object obj){
         if(obj == null)
             throw new NullPointerException();
+        if(this == obj)
+            return true;
             
         Requirement req = (Requirement) obj;
         return this.name.equals(req.getName()) && this.sort == req.getSort();
@@ -50,6 +50,8 @@ public class RuntimeBinding {
     public boolean equals(Object obj){
         if(obj == null)
             throw new NullPointerException();
+        if(this == obj)
+            return true;
             
         RuntimeBinding runBinding = (RuntimeBinding) obj;
         return 
@@ -0,0 +1,124 @@
+package unipi.di.socc.ramp.core.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * static topology of an application: its nodes and its binding function
+    * a topology is immutable: adding a node or a static binding makes a new topology
+    * as the topology never changes during the analysis, the copies of an application
+      share it and only copy their global state
+    * the static bindings and the <node, capability> pairs are indexed by name, so that they
+      can be looked up without building NodeReq/NodeCap keys
+    * names are plain Strings, interned by the parser: equal names are the same object (hence
+      equals stops at the reference) and String caches its hash code, so the maps keyed by name
+      cost about as much as maps keyed by int ids, without translating ids at the API and I/O
+ */
+
+public class Topology {
+
+    //node's name -> node
+    private final Map<String, Node> nodes;
+    private final Map<NodeReq, NodeCap> bindingFunction;
+
+    //node's name -> requirement's name -> <node, capability> bound to it
+    private final Map<String, Map<String, NodeCap>> staticBindings;
+    //node's name -> capability's name -> <node, capability> (canonical pairs)
+    private final Map<String, Map<String, NodeCap>> nodeCaps;
+
+    public Topology(){
+        this(Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * @param nodes components of the application
+     * @param bindingFunction binding function of the static topology
+     * @throws NullPointerException
+     */
+    public Topology(Map<String, Node> nodes, Map<NodeReq, NodeCap> bindingFunction)
+        throws
+            NullPointerException
+    {
+        if(nodes == null || bindingFunction == null)
+            throw new NullPointerException();
+
+        this.nodes = Collections.unmodifiableMap(new HashMap<>(nodes));
+        this.bindingFunction = Collections.unmodifiableMap(new HashMap<>(bindingFunction));
+
+        this.nodeCaps = new HashMap<>();
+        for(Node node : this.nodes.values()){
+            for(String cap : node.getCaps())
+                this.nodeCaps.computeIfAbsent(node.getName(), name -> new HashMap<>()).put(cap, new NodeCap(node.getName(), cap));
+        }
+        this.staticBindings = new HashMap<>();
+        for(Map.Entry<NodeReq, NodeCap> staticBinding : this.bindingFunction.entrySet()){
+            NodeCap nodeCap = this.getNodeCap(staticBinding.getValue().getNodeName(), staticBinding.getValue().getCap());
+            this.staticBindings
+                .computeIfAbsent(staticBinding.getKey().getNodeName(), name -> new HashMap<>())
+                .put(staticBinding.getKey().getReqName(), nodeCap);
+        }
+    }
+
+    public Map<String, Node> getNodes() {
+        return nodes;
+    }
+    public Map<NodeReq, NodeCap> getBindingFunction() {
+        return bindingFunction;
+    }
+
+    /**
+     * @return the <node, capability> bound to the requirement reqName of the node nodeName (null if none)
+     */
+    public NodeCap getStaticBinding(String nodeName, String reqName){
+        Map<String, NodeCap> nodeStaticBindings = this.staticBindings.get(nodeName);
+        return nodeStaticBindings != null ? nodeStaticBindings.get(reqName) : null;
+    }
+
+    /**
+     * @return the pair <nodeName, cap> (the canonical one, if cap is a capability of the node)
+     */
+    public NodeCap getNodeCap(String nodeName, String cap){
+        Map<String, NodeCap> capsOfNode = this.nodeCaps.get(nodeName);
+        NodeCap nodeCap = capsOfNode != null ? capsOfNode.get(cap) : null;
+        return nodeCap != null ? nodeCap : new NodeCap(nodeName, cap);
+    }
+
+    /**
+     * @param node node to add (or to replace, if a node with the same name exists)
+     * @return this topology with node
+     */
+    public Topology withNode(Node node){
+        Map<String, Node> newNodes = new HashMap<>(this.nodes);
+        newNodes.put(node.getName(), node);
+        return new Topology(newNodes, this.bindingFunction);
+    }
+
+    /**
+     * @return this topology with the static binding nodeReq -> nodeCap
+     */
+    public Topology withStaticBinding(NodeReq nodeReq, NodeCap nodeCap){
+        Map<NodeReq, NodeCap> newBindingFunction = new HashMap<>(this.bindingFunction);
+        newBindingFunction.put(nodeReq, nodeCap);
+        return new Topology(this.nodes, newBindingFunction);
+    }
+
+    @Override
+    public boolean equals(Object obj){
+        if(this == obj)
+            return true;
+        if(!(obj instanceof Topology))
+            return false;
+
+        Topology check = (Topology) obj;
+        return
+            this.nodes.equals(check.nodes) &&
+            this.bindingFunction.equals(check.bindingFunction)
+        ;
+    }
+
+    @Override
+    public int hashCode(){
+        return this.nodes.hashCode() * 31 + this.bindingFunction.hashCode();
+    }
+}
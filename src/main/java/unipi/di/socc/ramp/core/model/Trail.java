@@ -0,0 +1,43 @@
+package unipi.di.socc.ramp.core.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * undo log of the changes of a global state
+    * while a trail is set, the global state records how to undo each change it goes through
+    * mark() returns the current point of the log, rollback(mark) undoes (in reverse order)
+      all the changes made after such point
+    * this lets an analysis explore alternatives on a single global state instead of cloning it
+ */
+
+public class Trail {
+
+    private final Deque<Runnable> undoLog;
+
+    public Trail(){
+        this.undoLog = new ArrayDeque<>();
+    }
+
+    /**
+     * @return the current point of the log
+     */
+    public int mark(){
+        return this.undoLog.size();
+    }
+
+    /**
+     * @param mark point of the log (returned by mark) to go back to
+     */
+    public void rollback(int mark){
+        if(mark < 0 || mark > this.undoLog.size())
+            throw new IllegalArgumentException();
+
+        while(this.undoLog.size() > mark)
+            this.undoLog.pop().run();
+    }
+
+    void record(Runnable undo){
+        this.undoLog.push(undo);
+    }
+}
@@ -46,6 +46,8 @@ public class Transition {
     public boolean equals(Object obj){
         if(obj == null)
             throw new NullPointerException();
+        if(this == obj)
+            return true;
             
         Transition t = (Transition) obj;
         return this.name.equals(t.getName());
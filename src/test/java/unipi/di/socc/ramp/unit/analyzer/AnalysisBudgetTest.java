@@ -0,0 +1,135 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.AnalysisBudget;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.SearchStrategy;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class AnalysisBudgetTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+    private final String planPath = System.getProperty("user.dir").concat("/data/thinking-app/restart-node-maven/refactored-plan.json");
+
+    private static final long MAX_STATES = 10;
+
+    @Test
+    public void stateLimitTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        for(String property : new String[]{"--valid", "--weakly-valid"}){
+            for(int parallelism : new int[]{1, 4}){
+                Analyzer analyzer = new Analyzer();
+                analyzer.setParallelism(parallelism);
+                analyzer.getBudget().setMaxStates(MAX_STATES);
+                this.assertInconclusive(analyzer, property);
+            }
+
+            Analyzer bfs = new Analyzer();
+            bfs.setSearchStrategy(SearchStrategy.BFS);
+            bfs.getBudget().setMaxStates(MAX_STATES);
+            this.assertInconclusive(bfs, property);
+        }
+    }
+
+    @Test
+    public void noLimitTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        Analyzer analyzer = new Analyzer();
+        analyzer.planAnalysis(
+            Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+            Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/reconfigure-gui-api/plan.json")),
+            "--valid"
+        );
+
+        //the coverage is reported also when the analysis completes
+        assertFalse(analyzer.getReport().isInconclusive());
+        assertNull(analyzer.getReport().getExhaustedLimit());
+        assertTrue(analyzer.getReport().getMetrics().getExploredStates() > 0);
+        assertTrue(analyzer.getReport().getMetrics().getEstimatedLinearizations() >= 1);
+    }
+
+    @Test
+    public void freshReportTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        Analyzer analyzer = new Analyzer();
+
+        //a failing plan, then a plan exhausting the budget, on the same analyzer
+        assertFalse(analyzer.planAnalysis(
+            Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+            Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/reconfigure-gui-api/plan.json")),
+            "--valid"
+        ));
+        assertNotNull(analyzer.getReport().getFailedAction());
+        analyzer.getBudget().setMaxStates(MAX_STATES);
+        this.assertInconclusive(analyzer, "--valid");
+        assertNull(analyzer.getReport().getFailedAction());
+
+        //with no limit the next analysis is conclusive, and it reports nothing of the previous ones
+        analyzer.getBudget().setMaxStates(0);
+        assertTrue(analyzer.planAnalysis(
+            Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+            Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/reconfigure-gui-api/refactored-plan.json")),
+            "--valid"
+        ));
+        assertFalse(analyzer.getReport().isInconclusive());
+        assertNull(analyzer.getReport().getExhaustedLimit());
+        assertNull(analyzer.getReport().getFailedSequence());
+        assertNull(analyzer.getReport().getFailedAction());
+        assertNull(analyzer.getReport().getFailException());
+        assertNull(analyzer.getReport().getGlobalState());
+    }
+
+    private void assertInconclusive(Analyzer analyzer, String property)
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        assertFalse(analyzer.planAnalysis(
+            Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+            Parser.parsePlan(this.planPath),
+            property
+        ));
+        assertTrue(analyzer.getReport().isInconclusive());
+        assertEquals(AnalysisBudget.Limit.STATES, analyzer.getReport().getExhaustedLimit());
+        assertEquals(MAX_STATES, analyzer.getReport().getMetrics().getExploredStates());
+        assertTrue(analyzer.getReport().getMetrics().getEstimatedLinearizations() > analyzer.getReport().getMetrics().getExploredLinearizations());
+    }
+}
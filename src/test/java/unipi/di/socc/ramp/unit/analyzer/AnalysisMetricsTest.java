@@ -0,0 +1,105 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.cli.parser.PrintingUtilities;
+import unipi.di.socc.ramp.core.analyzer.AnalysisMetrics;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.Sequence;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.actions.OpEnd;
+import unipi.di.socc.ramp.core.analyzer.actions.OpStart;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class AnalysisMetricsTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    private static final int RESTARTS = 5;
+
+    @Test
+    public void sequenceMetricsTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException
+    {
+        //restarting g1 faults nothing: a single branch executing each action once
+        List<Action> restarts = new ArrayList<>();
+        for(int i = 0; i < RESTARTS; i++){
+            restarts.add(new OpStart("g1", "stop"));
+            restarts.add(new OpEnd("g1", "stop"));
+            restarts.add(new OpStart("g1", "start"));
+            restarts.add(new OpEnd("g1", "start"));
+        }
+
+        Analyzer analyzer = new Analyzer();
+        analyzer.setTrailMode(true);
+        assertTrue(analyzer.sequenceAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), new Sequence(restarts), "--valid"));
+
+        AnalysisMetrics metrics = analyzer.getReport().getMetrics();
+        assertEquals(restarts.size(), metrics.getExploredStates());
+        assertEquals(1, metrics.getExploredLinearizations());
+        assertEquals(1, metrics.getEstimatedLinearizations());
+        assertEquals(restarts.size() - 1, metrics.getPeakDepth());
+        assertEquals(0, metrics.getFaultBranches());
+        //the trail undoes the changes instead of cloning
+        assertEquals(0, metrics.getClones());
+        assertEquals(2 * RESTARTS, metrics.getRuleApplications(AnalysisMetrics.Rule.OP_START));
+        assertEquals(2 * RESTARTS, metrics.getRuleApplications(AnalysisMetrics.Rule.OP_END));
+        assertEquals(0, metrics.getRuleApplications(AnalysisMetrics.Rule.SCALE_IN));
+    }
+
+    @Test
+    public void planMetricsTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        String planPath = System.getProperty("user.dir").concat("/data/thinking-app/restart-node-maven/plan.json");
+
+        Analyzer analyzer = new Analyzer();
+        analyzer.planAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), Parser.parsePlan(planPath), "--valid");
+        AnalysisMetrics metrics = analyzer.getReport().getMetrics();
+
+        assertTrue(metrics.getExploredStates() > 0);
+        assertTrue(metrics.getClones() > 0);
+        assertTrue(metrics.getPeakDepth() > 0);
+        //each fault branch resolves or handles a fault
+        assertEquals(
+            metrics.getFaultBranches(),
+            metrics.getRuleApplications(AnalysisMetrics.Rule.RESOLVE_FAULT) + metrics.getRuleApplications(AnalysisMetrics.Rule.HANDLE_FAULT)
+        );
+
+        //the JSON of the metrics has the same values
+        JsonObject json = JsonParser.parseString(PrintingUtilities.metricsToJson(metrics)).getAsJsonObject();
+        assertEquals(metrics.getExploredStates(), json.get("exploredStates").getAsLong());
+        assertEquals(metrics.getMemoHits(), json.get("memoHits").getAsLong());
+        assertEquals(metrics.getPeakDepth(), json.get("peakDepth").getAsInt());
+        for(AnalysisMetrics.Rule rule : AnalysisMetrics.Rule.values()){
+            JsonObject ruleJson = json.getAsJsonObject("rules").getAsJsonObject(rule.getRuleName());
+            assertEquals(metrics.getRuleApplications(rule), ruleJson.get("applications").getAsLong());
+            assertEquals(metrics.getRuleNanos(rule), ruleJson.get("nanos").getAsLong());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.Plan;
+import unipi.di.socc.ramp.core.analyzer.Sequence;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class AnalyzerTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+    private final String planPath = System.getProperty("user.dir").concat("/data/thinking-app/reconfigure-gui-api/refactored-plan.json");
+
+    @Test
+    public void analysedApplicationUnchangedTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        Plan plan = Parser.parsePlan(this.planPath);
+
+        for(boolean trailMode : new boolean[]{ false, true }){
+            for(boolean persistentStates : new boolean[]{ false, true }){
+                Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+
+                //the same application is analysed twice, and it is left as it was parsed
+                for(int i = 0; i < 2; i++){
+                    for(String property : new String[]{ "--valid", "--weakly-valid" }){
+                        Analyzer analyzer = new Analyzer();
+                        analyzer.setTrailMode(trailMode);
+                        analyzer.setPersistentStates(persistentStates);
+                        assertTrue(analyzer.planAnalysis(thinking, plan, property));
+                        assertEquals(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), thinking);
+                    }
+
+                    Analyzer analyzer = new Analyzer();
+                    analyzer.setTrailMode(trailMode);
+                    analyzer.setPersistentStates(persistentStates);
+                    assertTrue(analyzer.sequenceAnalysis(thinking, new Sequence(plan.getActions()), "--valid"));
+                    assertEquals(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), thinking);
+                }
+            }
+        }
+    }
+}
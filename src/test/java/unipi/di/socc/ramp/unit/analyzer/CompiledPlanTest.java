@@ -0,0 +1,115 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.CompiledPlan;
+import unipi.di.socc.ramp.core.analyzer.Plan;
+import unipi.di.socc.ramp.core.analyzer.Sequence;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+
+public class CompiledPlanTest {
+
+    private final String[] plans = {
+        "reconfigure-gui-api/plan",
+        "restart-node-maven/plan",
+        "undeployment/plan",
+        "undeployment/refactored-plan"
+    };
+
+    @Test
+    public void frontierTest() throws IOException, CyclicPlanException {
+        for(String planName : this.plans){
+            Plan plan = Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json"));
+            CompiledPlan compiledPlan = new CompiledPlan(plan);
+            assertEquals(plan.getActions().size(), compiledPlan.size());
+
+            //the frontier enumerates the same linearizations of the scans of the partial order
+            List<Action> remaining = new ArrayList<>(plan.getActions());
+            CompiledPlan.Frontier frontier = compiledPlan.newFrontier();
+            assertEquals(this.countLinearizations(plan, remaining, new HashMap<>()), this.countLinearizations(frontier, new HashMap<>()));
+            //and it is restored by the undos
+            assertEquals(compiledPlan.newFrontier().getRemaining(), frontier.getRemaining());
+            for(int id = 0; id < compiledPlan.size(); id++)
+                assertEquals(this.isEnabled(plan, compiledPlan.getAction(id), remaining), frontier.isEnabled(id));
+
+            //the completed traces follow the partial order
+            Sequence trace = frontier.completeTrace(new Sequence());
+            assertEquals(compiledPlan.size(), trace.getActions().size());
+            for(int i = 0; i < trace.getActions().size(); i++){
+                for(int j = i + 1; j < trace.getActions().size(); j++)
+                    assertTrue(!plan.getPartialOrder().get(trace.getActions().get(j)).contains(trace.getActions().get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void estimateLinearizationsTest() throws IOException, CyclicPlanException {
+        for(String planName : this.plans){
+            Plan plan = Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json"));
+            CompiledPlan compiledPlan = new CompiledPlan(plan);
+
+            //the estimate is unbiased: with many probes it gets close to the actual number
+            long linearizations = this.countLinearizations(compiledPlan.newFrontier(), new HashMap<>());
+            double estimate = compiledPlan.estimateLinearizations(10000, new Random(0));
+            assertTrue(Math.abs(estimate - linearizations) <= 0.1 * linearizations, planName + ": " + estimate + " vs " + linearizations);
+        }
+    }
+
+    //counts are memoized on the remaining actions
+    private long countLinearizations(CompiledPlan.Frontier frontier, Map<BitSet, Long> counts){
+        if(frontier.isEmpty())
+            return 1;
+        Long known = counts.get(frontier.getRemaining());
+        if(known != null)
+            return known;
+
+        long count = 0;
+        for(int id = frontier.nextEnabled(0); id >= 0; id = frontier.nextEnabled(id + 1)){
+            frontier.execute(id);
+            count += this.countLinearizations(frontier, counts);
+            frontier.undo(id);
+        }
+        counts.put(frontier.getRemaining(), count);
+        return count;
+    }
+
+    private long countLinearizations(Plan plan, List<Action> remaining, Map<List<Action>, Long> counts){
+        if(remaining.isEmpty())
+            return 1;
+        Long known = counts.get(remaining);
+        if(known != null)
+            return known;
+
+        long count = 0;
+        for(Action a : remaining){
+            if(!this.isEnabled(plan, a, remaining))
+                continue;
+            List<Action> newRemaining = new ArrayList<>(remaining);
+            newRemaining.remove(a);
+            count += this.countLinearizations(plan, newRemaining, counts);
+        }
+        counts.put(remaining, count);
+        return count;
+    }
+
+    private boolean isEnabled(Plan plan, Action a, List<Action> remaining){
+        for(Action r : remaining){
+            if(r != a && plan.getPartialOrder().get(r).contains(a))
+                return false;
+        }
+        return true;
+    }
+}
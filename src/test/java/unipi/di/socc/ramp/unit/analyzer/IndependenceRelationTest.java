@@ -0,0 +1,222 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.IndependenceRelation;
+import unipi.di.socc.ramp.core.analyzer.Plan;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.actions.OpEnd;
+import unipi.di.socc.ramp.core.analyzer.actions.OpStart;
+import unipi.di.socc.ramp.core.analyzer.actions.ScaleOut;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.ManagementProtocol;
+import unipi.di.socc.ramp.core.model.Node;
+import unipi.di.socc.ramp.core.model.NodeCap;
+import unipi.di.socc.ramp.core.model.NodeReq;
+import unipi.di.socc.ramp.core.model.PiVersion;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RequirementSort;
+import unipi.di.socc.ramp.core.model.exceptions.AlreadyUsedIDException;
+import unipi.di.socc.ramp.core.model.exceptions.FailedOperationException;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.OperationNotAvailableException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class IndependenceRelationTest {
+
+    public Application testApp;
+    public Requirement needyReq;
+
+    @BeforeEach
+    public void before()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            NodeUnknownException
+    {
+        this.needyReq = new Requirement("needyReq", RequirementSort.REPLICA_UNAWARE);
+
+        this.testApp = new Application("testApp", PiVersion.GREEDYPI);
+        this.testApp.addNode(this.createNeedy());
+        this.testApp.addNode(this.createStandalone("server"));
+        this.testApp.addNode(this.createStandalone("loneA"));
+        this.testApp.addNode(this.createStandalone("loneB"));
+
+        this.testApp.addStaticBinding(new NodeReq("needy", "needyReq"), new NodeCap("server", "serverCap"));
+    }
+
+    @Test
+    public void independenceTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            RuleNotApplicableException,
+            AlreadyUsedIDException,
+            InstanceUnknownException,
+            NodeUnknownException,
+            OperationNotAvailableException,
+            FailedOperationException
+    {
+        Action scaleOutLoneA = new ScaleOut("a", "loneA");
+        Action scaleOutLoneB = new ScaleOut("b", "loneB");
+        Action scaleOutServer = new ScaleOut("s", "server");
+        Action scaleOutNeedy = new ScaleOut("n", "needy");
+        Action startLoneA = new OpStart("a", "start");
+        Action startLoneB = new OpStart("b", "start");
+        Action endLoneA = new OpEnd("a", "start");
+        Action startServer = new OpStart("s", "start");
+        Action endServer = new OpEnd("s", "start");
+        Action startNeedy = new OpStart("n", "start");
+        Action endNeedy = new OpEnd("n", "start");
+
+        List<Action> actions = new ArrayList<>();
+        actions.add(scaleOutLoneA);
+        actions.add(scaleOutLoneB);
+        actions.add(scaleOutServer);
+        actions.add(scaleOutNeedy);
+        actions.add(startLoneA);
+        actions.add(startLoneB);
+        actions.add(endLoneA);
+        actions.add(startServer);
+        actions.add(endServer);
+        actions.add(startNeedy);
+        actions.add(endNeedy);
+
+        IndependenceRelation independence = new IndependenceRelation(actions);
+        Application app = this.testApp.clone();
+
+        //scale outs of different instances
+        assertTrue(independence.areIndependent(app, scaleOutLoneA, scaleOutLoneB));
+        assertTrue(independence.areIndependent(app, scaleOutServer, scaleOutNeedy));
+        for(int i = 0; i < 4; i++)
+            app.execute(actions.get(i));
+
+        //actions on unrelated instances
+        assertTrue(independence.areIndependent(app, startLoneA, startLoneB));
+        assertTrue(independence.areIndependent(app, startLoneA, startServer));
+        //actions on the same instance
+        assertFalse(independence.areIndependent(app, startLoneA, endLoneA));
+        //actions that are not in the plan
+        assertFalse(independence.areIndependent(app, startLoneA, new OpStart("c", "start")));
+
+        //the needy instance cannot end starting (its requirement is not satisfied) until server runs
+        app.execute(startNeedy);
+        assertFalse(independence.areIndependent(app, startLoneA, endNeedy));
+        app.execute(startServer);
+        app.execute(endServer);
+        Application copy = app.clone();
+        assertTrue(independence.areIndependent(app, startLoneA, endNeedy));
+        //the analysed application is not changed
+        assertEquals(copy, app);
+    }
+
+    @Test
+    public void fewerLinearizationsTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+        String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+        Plan plan = Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/undeployment/refactored-plan.json"));
+
+        Analyzer analyzer = new Analyzer();
+        assertFalse(analyzer.planAnalysis(Parser.parseApplication(thinkingPath, thinkingGSPath), plan, "--valid"));
+
+        //the same verdict is found by analysing fewer linearizations (swapping independent actions)
+        Analyzer reducingAnalyzer = new Analyzer();
+        reducingAnalyzer.setPartialOrderReduction(true);
+        assertFalse(reducingAnalyzer.planAnalysis(Parser.parseApplication(thinkingPath, thinkingGSPath), plan, "--valid"));
+        assertTrue(
+            reducingAnalyzer.getReport().getMetrics().getExploredLinearizations()
+            < analyzer.getReport().getMetrics().getExploredLinearizations()
+        );
+    }
+
+    @Test
+    public void sameVerdictTest() throws UnsupportedAnalysisException{
+        List<Action> actions = new ArrayList<>();
+        actions.add(new ScaleOut("a", "loneA"));
+        actions.add(new ScaleOut("b", "loneB"));
+        actions.add(new OpStart("a", "start"));
+        actions.add(new OpEnd("a", "start"));
+        actions.add(new OpStart("b", "start"));
+        actions.add(new OpEnd("b", "start"));
+
+        Map<Action, List<Action>> partialOrder = new HashMap<>();
+        for(Action action : actions)
+            partialOrder.put(action, new ArrayList<>());
+        partialOrder.get(actions.get(2)).add(actions.get(3));
+        partialOrder.get(actions.get(4)).add(actions.get(5));
+
+        //valid only if loneA starts after its scale out (and the same for loneB)
+        Plan notValidPlan = new Plan(actions, partialOrder);
+        assertFalse(new Analyzer().planAnalysis(this.testApp.clone(), notValidPlan, "--valid"));
+
+        Analyzer reducingAnalyzer = new Analyzer();
+        reducingAnalyzer.setPartialOrderReduction(true);
+        assertFalse(reducingAnalyzer.planAnalysis(this.testApp.clone(), notValidPlan, "--valid"));
+
+        reducingAnalyzer = new Analyzer();
+        reducingAnalyzer.setPartialOrderReduction(true);
+        assertTrue(reducingAnalyzer.planAnalysis(this.testApp.clone(), notValidPlan, "--weakly-valid"));
+
+        partialOrder.get(actions.get(0)).add(actions.get(2));
+        partialOrder.get(actions.get(0)).add(actions.get(3));
+        partialOrder.get(actions.get(1)).add(actions.get(4));
+        partialOrder.get(actions.get(1)).add(actions.get(5));
+        Plan validPlan = new Plan(actions, partialOrder);
+
+        assertTrue(new Analyzer().planAnalysis(this.testApp.clone(), validPlan, "--valid"));
+
+        reducingAnalyzer = new Analyzer();
+        reducingAnalyzer.setPartialOrderReduction(true);
+        assertTrue(reducingAnalyzer.planAnalysis(this.testApp.clone(), validPlan, "--valid"));
+    }
+
+    public Node createNeedy(){
+        Node needy = new Node("needy", new ManagementProtocol("stopped"));
+        needy.addRequirement(this.needyReq);
+        needy.addOperation("start");
+
+        ManagementProtocol needyMP = needy.getManProtocol();
+        needyMP.addState("running");
+        needyMP.addTransition("stopped", "start", "running");
+        needyMP.getRho().get("running").add(this.needyReq);
+
+        return needy;
+    }
+
+    public Node createStandalone(String name){
+        Node standalone = new Node(name, new ManagementProtocol("stopped"));
+        standalone.addCapability(name + "Cap");
+        standalone.addOperation("start");
+
+        ManagementProtocol standaloneMP = standalone.getManProtocol();
+        standaloneMP.addState("running");
+        standaloneMP.addTransition("stopped", "start", "running");
+        standaloneMP.getGamma().get("running").add(name + "Cap");
+
+        return standalone;
+    }
+}
@@ -0,0 +1,118 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class ParallelAnalysisTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    @Test
+    public void sameReportTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        String[] plans = {
+            "reconfigure-gui-api/plan",
+            "restart-node-maven/plan",
+            "undeployment/plan",
+            "undeployment/refactored-plan"
+        };
+
+        for(String plan : plans){
+            for(String property : new String[]{"--valid", "--weakly-valid"}){
+                Analyzer sequential = new Analyzer();
+                boolean sequentialVerdict = this.analyse(sequential, plan, property);
+
+                Analyzer parallel = new Analyzer();
+                parallel.setParallelism(4);
+                boolean parallelVerdict = this.analyse(parallel, plan, property);
+
+                assertEquals(sequentialVerdict, parallelVerdict);
+                if(!sequentialVerdict){
+                    //the same counterexample is reported
+                    assertEquals(
+                        sequential.getReport().getFailedSequence().getActions(),
+                        parallel.getReport().getFailedSequence().getActions()
+                    );
+                    assertEquals(sequential.getReport().getFailedAction(), parallel.getReport().getFailedAction());
+                    assertEquals(sequential.getReport().getGlobalState(), parallel.getReport().getGlobalState());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameSequenceReportTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException
+    {
+        String[] sequences = {
+            "reconfigure-gui-api/plan",
+            "restart-node-maven/plan",
+            "undeployment/plan",
+            "undeployment/refactored-plan"
+        };
+
+        for(String sequence : sequences){
+            String sequencePath = System.getProperty("user.dir").concat("/data/thinking-app/" + sequence + ".json");
+
+            Analyzer sequential = new Analyzer();
+            boolean sequentialVerdict = sequential.sequenceAnalysis(
+                Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                Parser.parseSequence(sequencePath),
+                "--valid"
+            );
+
+            Analyzer parallel = new Analyzer();
+            parallel.setParallelism(4);
+            boolean parallelVerdict = parallel.sequenceAnalysis(
+                Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                Parser.parseSequence(sequencePath),
+                "--valid"
+            );
+
+            assertEquals(sequentialVerdict, parallelVerdict);
+            if(!sequentialVerdict){
+                //the first failing branch is reported
+                assertEquals(sequential.getReport().getFailedAction(), parallel.getReport().getFailedAction());
+                assertEquals(sequential.getReport().getGlobalState(), parallel.getReport().getGlobalState());
+            }
+        }
+    }
+
+    private boolean analyse(Analyzer analyzer, String plan, String property)
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        String planPath = System.getProperty("user.dir").concat("/data/thinking-app/" + plan + ".json");
+
+        return analyzer.planAnalysis(thinking, Parser.parsePlan(planPath), property);
+    }
+}
@@ -0,0 +1,190 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.CompiledPlan;
+import unipi.di.socc.ramp.core.analyzer.Plan;
+import unipi.di.socc.ramp.core.analyzer.SearchStrategy;
+import unipi.di.socc.ramp.core.analyzer.Sequence;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.actions.OpEnd;
+import unipi.di.socc.ramp.core.analyzer.actions.OpStart;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class PrefixSharingTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    //plans whose linearizations can be enumerated up to the first failing one
+    private final String[] enumerablePlans = {
+        "reconfigure-gui-api/plan",
+        "reconfigure-gui-api/refactored-plan",
+        "restart-node-maven/plan",
+        "undeployment/plan"
+    };
+
+    private final String[] failingPlans = {
+        "reconfigure-gui-api/plan",
+        "restart-node-maven/plan",
+        "undeployment/plan",
+        "undeployment/refactored-plan"
+    };
+
+    @Test
+    public void sameReportAsEnumerationTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        for(String planName : this.enumerablePlans){
+            Plan plan = Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json"));
+            CompiledPlan compiledPlan = new CompiledPlan(plan);
+
+            //the linearizations analysed one at a time, from the initial global state
+            Analyzer enumeration = this.firstFailingLinearization(compiledPlan, compiledPlan.newFrontier(), new ArrayList<>());
+
+            for(boolean trailMode : new boolean[]{ false, true }){
+                Analyzer analyzer = new Analyzer();
+                analyzer.setTrailMode(trailMode);
+                boolean verdict = analyzer.planAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), plan, "--valid");
+
+                assertEquals(enumeration == null, verdict, planName);
+                if(!verdict){
+                    //the first failing linearization is reported, with the same failure
+                    assertEquals(enumeration.getReport().getFailedSequence().getActions(), analyzer.getReport().getFailedSequence().getActions(), planName);
+                    assertEquals(enumeration.getReport().getFailedAction(), analyzer.getReport().getFailedAction(), planName);
+                    assertEquals(enumeration.getReport().getGlobalState(), analyzer.getReport().getGlobalState(), planName);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void failedTraceTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        for(String planName : this.failingPlans){
+            Plan plan = Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json"));
+
+            Analyzer analyzer = new Analyzer();
+            assertFalse(analyzer.planAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), plan, "--valid"));
+
+            //the reported trace fails on its own, at the reported action
+            List<Action> failedTrace = analyzer.getReport().getFailedSequence().getActions();
+            assertEquals(plan.getActions().size(), failedTrace.size());
+            Analyzer sequenceAnalyzer = new Analyzer();
+            assertFalse(sequenceAnalyzer.sequenceAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), new Sequence(new ArrayList<>(failedTrace)), "--valid"));
+            assertEquals(sequenceAnalyzer.getReport().getFailedAction(), analyzer.getReport().getFailedAction(), planName);
+            assertEquals(sequenceAnalyzer.getReport().getGlobalState(), analyzer.getReport().getGlobalState(), planName);
+        }
+    }
+
+    @Test
+    public void failedActionInTraceTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        Map<String, Plan> plans = new LinkedHashMap<>();
+        for(String planName : this.failingPlans)
+            plans.put(planName, Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json")));
+        //no trace is valid (d1 is not stopping), and the traces fail at different prefixes
+        OpStart stopA1 = new OpStart("a1", "stop");
+        OpEnd stoppedA1 = new OpEnd("a1", "stop");
+        Map<Action, List<Action>> partialOrder = new HashMap<>();
+        partialOrder.put(stopA1, Arrays.asList(stoppedA1));
+        plans.put("not weakly valid", new Plan(Arrays.asList(stopA1, stoppedA1, new OpEnd("d1", "stop")), partialOrder));
+
+        int weakFailures = 0;
+        for(String planName : plans.keySet()){
+            Plan plan = plans.get(planName);
+
+            for(String property : new String[]{ "--valid", "--weakly-valid" }){
+                for(Analyzer analyzer : this.analyzers()){
+                    if(analyzer.planAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), plan, property))
+                        continue;
+                    //the reported action belongs to the reported trace
+                    List<Action> failedTrace = analyzer.getReport().getFailedSequence().getActions();
+                    assertTrue(failedTrace.contains(analyzer.getReport().getFailedAction()), planName + " " + property);
+                    if(property.equals("--valid"))
+                        continue;
+
+                    //all the branches of the prefix before the failed action succeed, hence the
+                    //reported trace fails exactly at the reported action
+                    weakFailures++;
+                    Analyzer sequenceAnalyzer = new Analyzer();
+                    assertFalse(sequenceAnalyzer.sequenceAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), new Sequence(new ArrayList<>(failedTrace)), "--valid"));
+                    assertEquals(sequenceAnalyzer.getReport().getFailedAction(), analyzer.getReport().getFailedAction(), planName + " " + property);
+                }
+            }
+        }
+        assertTrue(weakFailures > 0);
+    }
+
+    //sequential (DFS and BFS) and parallel analyzers
+    private List<Analyzer> analyzers(){
+        Analyzer bfs = new Analyzer();
+        bfs.setSearchStrategy(SearchStrategy.BFS);
+        Analyzer parallel = new Analyzer();
+        parallel.setParallelism(4);
+        return Arrays.asList(new Analyzer(), bfs, parallel);
+    }
+
+    //the analyzer of the first failing linearization extending trace (in the order of the ids of the actions), null if none
+    private Analyzer firstFailingLinearization(CompiledPlan compiledPlan, CompiledPlan.Frontier frontier, List<Action> trace)
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException
+    {
+        if(frontier.isEmpty()){
+            Analyzer analyzer = new Analyzer();
+            boolean verdict = analyzer.sequenceAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), new Sequence(new ArrayList<>(trace)), "--valid");
+            return verdict ? null : analyzer;
+        }
+
+        for(int id = frontier.nextEnabled(0); id >= 0; id = frontier.nextEnabled(id + 1)){
+            frontier.execute(id);
+            trace.add(compiledPlan.getAction(id));
+            Analyzer failing = this.firstFailingLinearization(compiledPlan, frontier, trace);
+            trace.remove(trace.size() - 1);
+            frontier.undo(id);
+            if(failing != null)
+                return failing;
+        }
+        return null;
+    }
+}
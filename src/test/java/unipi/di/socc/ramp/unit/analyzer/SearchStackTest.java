@@ -0,0 +1,60 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.Sequence;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.actions.OpEnd;
+import unipi.di.socc.ramp.core.analyzer.actions.OpStart;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class SearchStackTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    //restarting g1 many times: the depth of the analysis is the length of the sequence
+    private static final int RESTARTS = 20000;
+
+    @Test
+    public void longSequenceTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException
+    {
+        List<Action> restarts = new ArrayList<>();
+        for(int i = 0; i < RESTARTS; i++){
+            restarts.add(new OpStart("g1", "stop"));
+            restarts.add(new OpEnd("g1", "stop"));
+            restarts.add(new OpStart("g1", "start"));
+            restarts.add(new OpEnd("g1", "start"));
+        }
+
+        Analyzer analyzer = new Analyzer();
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        assertTrue(analyzer.sequenceAnalysis(thinking, new Sequence(restarts), "--valid"));
+
+        //a failure at the end of the sequence is reported as well
+        restarts.add(new OpEnd("g1", "start"));
+        Analyzer failingAnalyzer = new Analyzer();
+        failingAnalyzer.setTrailMode(true);
+        thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        assertFalse(failingAnalyzer.sequenceAnalysis(thinking, new Sequence(restarts), "--valid"));
+        assertEquals(new OpEnd("g1", "start"), failingAnalyzer.getReport().getFailedAction());
+    }
+}
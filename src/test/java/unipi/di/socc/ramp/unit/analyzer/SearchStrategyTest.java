@@ -0,0 +1,142 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.Plan;
+import unipi.di.socc.ramp.core.analyzer.SearchStrategy;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class SearchStrategyTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    private final String[] plans = {
+        "reconfigure-gui-api/plan",
+        "reconfigure-gui-api/refactored-plan",
+        "restart-node-maven/plan",
+        "restart-node-maven/refactored-plan",
+        "undeployment/plan",
+        "undeployment/refactored-plan"
+    };
+
+    @Test
+    public void samePlanVerdictTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        for(String planName : this.plans){
+            String planPath = System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json");
+
+            for(String property : new String[]{"--valid", "--weakly-valid"}){
+                Analyzer dfs = new Analyzer();
+                boolean dfsVerdict = dfs.planAnalysis(
+                    Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                    Parser.parsePlan(planPath),
+                    property
+                );
+
+                for(SearchStrategy strategy : SearchStrategy.values()){
+                    Analyzer analyzer = new Analyzer();
+                    analyzer.setSearchStrategy(strategy);
+                    Plan plan = Parser.parsePlan(planPath);
+                    boolean verdict = analyzer.planAnalysis(
+                        Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                        plan,
+                        property
+                    );
+
+                    assertEquals(dfsVerdict, verdict, planName + " " + property + " " + strategy);
+                    if(!verdict){
+                        //the counterexample is a linearization of the plan
+                        assertNotNull(analyzer.getReport().getFailedSequence());
+                        assertEquals(plan.getActions().size(), analyzer.getReport().getFailedSequence().getActions().size());
+                        if(property.equals("--valid"))
+                            assertNotNull(analyzer.getReport().getFailedAction());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameSequenceVerdictTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException
+    {
+        for(String sequenceName : this.plans){
+            String sequencePath = System.getProperty("user.dir").concat("/data/thinking-app/" + sequenceName + ".json");
+
+            Analyzer dfs = new Analyzer();
+            boolean dfsVerdict = dfs.sequenceAnalysis(
+                Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                Parser.parseSequence(sequencePath),
+                "--valid"
+            );
+
+            for(SearchStrategy strategy : SearchStrategy.values()){
+                Analyzer analyzer = new Analyzer();
+                analyzer.setSearchStrategy(strategy);
+                boolean verdict = analyzer.sequenceAnalysis(
+                    Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                    Parser.parseSequence(sequencePath),
+                    "--valid"
+                );
+
+                assertEquals(dfsVerdict, verdict, sequenceName + " " + strategy);
+                if(!verdict)
+                    assertNotNull(analyzer.getReport().getFailedAction());
+            }
+        }
+    }
+
+    @Test
+    public void shortestCounterexampleTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        for(String planName : this.plans){
+            String planPath = System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json");
+
+            Analyzer bfs = new Analyzer();
+            bfs.setSearchStrategy(SearchStrategy.BFS);
+            if(bfs.planAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), Parser.parsePlan(planPath), "--valid"))
+                continue;
+
+            //BFS stops at the depth of a shortest counterexample, and so does iterative deepening
+            //(which never explores deeper than the counterexample it reports)
+            Analyzer iterativeDeepening = new Analyzer();
+            iterativeDeepening.setSearchStrategy(SearchStrategy.ITERATIVE_DEEPENING);
+            assertFalse(iterativeDeepening.planAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), Parser.parsePlan(planPath), "--valid"));
+            assertEquals(
+                bfs.getReport().getMetrics().getPeakDepth(),
+                iterativeDeepening.getReport().getMetrics().getPeakDepth(),
+                planName
+            );
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.SymmetryReduction;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.actions.OpStart;
+import unipi.di.socc.ramp.core.analyzer.actions.ScaleOut;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.GlobalState;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RuntimeBinding;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class SymmetryReductionTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    @Test
+    public void canonicalFingerprintTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            InstanceUnknownException,
+            RuleNotApplicableException
+    {
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+
+        //g1 uses a2 (hosted on m2) instead of a1 (hosted on m1)
+        Application swapped = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        Requirement backend = null;
+        for(RuntimeBinding rb : swapped.getGlobalState().getRuntimeBindings().get("g1")){
+            if(rb.getReq().getName().equals("backend"))
+                backend = rb.getReq();
+        }
+        swapped.getGlobalState().removeRuntimeBinding("g1", backend);
+        swapped.getGlobalState().addRuntimeBinding("g1", backend, "a2");
+
+        //a1 and a2 are replicas if no action names them, but they cannot be swapped as pi prefers a1
+        SymmetryReduction noNames = new SymmetryReduction(new ArrayList<>());
+        assertFalse(Arrays.equals(noNames.canonicalFingerprint(thinking.getGlobalState()), noNames.canonicalFingerprint(swapped.getGlobalState())));
+
+        //g1 uses the only api replica, hosted on the only maven replica: the same global state up to renaming
+        thinking.scaleIn("m2");
+        swapped.scaleIn("m1");
+        assertFalse(Arrays.equals(thinking.getGlobalState().getFingerprint(), swapped.getGlobalState().getFingerprint()));
+        assertArrayEquals(noNames.canonicalFingerprint(thinking.getGlobalState()), noNames.canonicalFingerprint(swapped.getGlobalState()));
+
+        //unless an action creates an api instance whose id is between a1 and a2 (chosen by pi only before a2)
+        List<Action> actions = new ArrayList<>();
+        actions.add(new ScaleOut("a15", "api"));
+        SymmetryReduction a15Named = new SymmetryReduction(actions);
+        assertFalse(Arrays.equals(a15Named.canonicalFingerprint(thinking.getGlobalState()), a15Named.canonicalFingerprint(swapped.getGlobalState())));
+
+        //or an action names a1
+        actions = new ArrayList<>();
+        actions.add(new OpStart("a1", "stop"));
+        SymmetryReduction a1Named = new SymmetryReduction(actions);
+        assertFalse(Arrays.equals(a1Named.canonicalFingerprint(thinking.getGlobalState()), a1Named.canonicalFingerprint(swapped.getGlobalState())));
+    }
+
+    @Test
+    public void bindingOrderTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            InstanceUnknownException
+    {
+        //g1 gets a second backend binding (to a2), before or after the one to a1
+        GlobalState gs = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath).getGlobalState();
+        GlobalState reorderedGS = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath).getGlobalState();
+        Requirement backend = null;
+        for(RuntimeBinding rb : gs.getRuntimeBindings().get("g1")){
+            if(rb.getReq().getName().equals("backend"))
+                backend = rb.getReq();
+        }
+        gs.addRuntimeBinding("g1", backend, "a2");
+        reorderedGS.removeRuntimeBinding("g1", backend);
+        reorderedGS.addRuntimeBinding("g1", backend, "a2");
+        reorderedGS.addRuntimeBinding("g1", backend, "a1");
+
+        //the last binding is the one removed first, hence the two global states are not equivalent
+        SymmetryReduction noNames = new SymmetryReduction(new ArrayList<>());
+        assertFalse(Arrays.equals(noNames.canonicalFingerprint(gs), noNames.canonicalFingerprint(reorderedGS)));
+    }
+
+    @Test
+    public void sameVerdictTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        String[] plans = {
+            "reconfigure-gui-api/plan",
+            "restart-node-maven/plan",
+            "undeployment/plan",
+            "undeployment/refactored-plan"
+        };
+        String[] properties = { "--valid", "--weakly-valid" };
+
+        for(String plan : plans){
+            for(String property : properties){
+                String planPath = System.getProperty("user.dir").concat("/data/thinking-app/" + plan + ".json");
+
+                Analyzer plain = new Analyzer();
+                Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+                boolean plainVerdict = plain.planAnalysis(thinking, Parser.parsePlan(planPath), property);
+
+                Analyzer symmetric = new Analyzer();
+                symmetric.setSymmetryReduction(true);
+                Application otherThinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+                boolean symmetricVerdict = symmetric.planAnalysis(otherThinking, Parser.parsePlan(planPath), property);
+
+                assertEquals(plainVerdict, symmetricVerdict);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package unipi.di.socc.ramp.unit.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.CompiledPlan;
+import unipi.di.socc.ramp.core.analyzer.Plan;
+import unipi.di.socc.ramp.core.analyzer.Sequence;
+import unipi.di.socc.ramp.core.analyzer.TranspositionTable;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.NodeInstance;
+import unipi.di.socc.ramp.core.model.exceptions.FailedOperationException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class TranspositionTableTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    private final String[] plans = {
+        "reconfigure-gui-api/plan",
+        "reconfigure-gui-api/refactored-plan",
+        "restart-node-maven/plan",
+        "restart-node-maven/refactored-plan",
+        "undeployment/plan",
+        "undeployment/refactored-plan"
+    };
+
+    //random linearizations of each plan analysed as sequences
+    private static final int SEQUENCES = 30;
+
+    @Test
+    public void keyTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException
+    {
+        TranspositionTable transpositionTable = new TranspositionTable();
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        Application otherThinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+
+        //equal global states at the same position share their verdict
+        transpositionTable.record(transpositionTable.keyOf(thinking.getGlobalState(), 3), false);
+        assertEquals(false, transpositionTable.lookup(transpositionTable.keyOf(otherThinking.getGlobalState(), 3)));
+        assertEquals(1, transpositionTable.getHits());
+
+        //but not at another position
+        assertNull(transpositionTable.lookup(transpositionTable.keyOf(otherThinking.getGlobalState(), 4)));
+        assertNotEquals(
+            transpositionTable.keyOf(thinking.getGlobalState(), 3),
+            transpositionTable.keyOf(otherThinking.getGlobalState(), 4)
+        );
+    }
+
+    @Test
+    public void memoizedVerdictsTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        Random random = new Random(0);
+        int memoHits = 0;
+
+        for(String planName : this.plans){
+            Plan plan = Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json"));
+            CompiledPlan compiledPlan = new CompiledPlan(plan);
+
+            for(int i = 0; i < SEQUENCES; i++){
+                List<Action> sequence = this.randomLinearization(compiledPlan, random);
+
+                //the verdict of the memoized analysis is the one of the exhaustive one
+                boolean verdict = this.isValidSequence(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), sequence, 0);
+                for(boolean trailMode : new boolean[]{ false, true }){
+                    Analyzer analyzer = new Analyzer();
+                    analyzer.setTrailMode(trailMode);
+                    assertEquals(
+                        verdict,
+                        analyzer.sequenceAnalysis(Parser.parseApplication(this.thinkingPath, this.thinkingGSPath), new Sequence(new ArrayList<>(sequence)), "--valid"),
+                        planName + ": " + sequence
+                    );
+                    memoHits += analyzer.getReport().getMetrics().getMemoHits();
+                }
+            }
+        }
+        //the verdicts were actually memoized
+        assertTrue(memoHits > 0);
+    }
+
+    private List<Action> randomLinearization(CompiledPlan compiledPlan, Random random){
+        List<Action> sequence = new ArrayList<>();
+        CompiledPlan.Frontier frontier = compiledPlan.newFrontier();
+        while(!frontier.isEmpty()){
+            List<Integer> enabled = new ArrayList<>();
+            for(int id = frontier.nextEnabled(0); id >= 0; id = frontier.nextEnabled(id + 1))
+                enabled.add(id);
+            int id = enabled.get(random.nextInt(enabled.size()));
+            frontier.execute(id);
+            sequence.add(compiledPlan.getAction(id));
+        }
+        return sequence;
+    }
+
+    //exhaustive analysis cloning the application for each fault branch, with no memo table
+    private boolean isValidSequence(Application app, List<Action> sequence, int cursor){
+        if(cursor == sequence.size())
+            return true;
+
+        boolean faultedOpEnd = false;
+        try {
+            app.execute(sequence.get(cursor));
+        } catch (FailedOperationException e) {
+            faultedOpEnd = true;
+        } catch (Exception e) {
+            return false;
+        }
+
+        List<Fault> pendingFaults;
+        try {
+            List<NodeInstance> brokenInstances = app.getGlobalState().getBrokenInstances();
+            pendingFaults = app.getGlobalState().getPendingFaults();
+            if(!brokenInstances.isEmpty())
+                app.scaleIn(brokenInstances.get(0).getID());
+        } catch (Exception e) {
+            return false;
+        }
+
+        if(!faultedOpEnd && !this.isValidSequence(app.clone(), sequence, cursor + 1))
+            return false;
+        for(Fault pendingFault : pendingFaults){
+            Application branchApp = app.clone();
+            try {
+                boolean isResolvableFault = branchApp.getGlobalState().isResolvableFault(pendingFault);
+                if(isResolvableFault)
+                    branchApp.resolveFault(pendingFault);
+                else
+                    branchApp.handleFault(pendingFault);
+                //a resolved fault of a failed opEnd lets the opEnd be executed again
+                if(!this.isValidSequence(branchApp, sequence, faultedOpEnd && isResolvableFault ? cursor : cursor + 1))
+                    return false;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,188 @@
+package unipi.di.socc.ramp.unit.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.CompiledProtocol;
+import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.ManagementProtocol;
+import unipi.di.socc.ramp.core.model.Node;
+import unipi.di.socc.ramp.core.model.NodeInstance;
+import unipi.di.socc.ramp.core.model.PiVersion;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RequirementSort;
+import unipi.di.socc.ramp.core.model.Transition;
+import unipi.di.socc.ramp.core.model.exceptions.AlreadyUsedIDException;
+import unipi.di.socc.ramp.core.model.exceptions.FailedFaultHandlingExecption;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.OperationNotAvailableException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class CompiledProtocolTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    @Test
+    public void transitionTableTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException
+    {
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+
+        for(Node node : thinking.getNodes().values()){
+            ManagementProtocol mp = node.getManProtocol();
+            mp.compile(node.getReqs());
+            assertNotNull(mp.getCompiled());
+
+            //the tables give what the scans of the protocol give
+            for(String state : mp.getStates()){
+                NodeInstance instance = new NodeInstance(node, state, "instance");
+                for(String op : node.getOps())
+                    assertEquals(this.scannedTransition(mp, state, op), instance.getTransitionByOp(op));
+                for(String cap : node.getCaps())
+                    assertEquals(mp.getGamma().get(state).contains(cap), instance.isOffering(cap));
+                if(mp.getTransitions().containsKey(state))
+                    assertEquals(mp.getTransitions().get(state), mp.getCompiled().getTransitionOf(state));
+            }
+        }
+    }
+
+    @Test
+    public void compiledRulesTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException,
+            FailedFaultHandlingExecption
+    {
+        Application compiled = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        compiled.compileProtocols();
+        Application scanned = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+
+        //stopping the database faults the apis, which handle their faults
+        for(Application app : new Application[]{ compiled, scanned }){
+            app.opStart("d1", "stop");
+            for(Fault fault : app.getGlobalState().getPendingFaults()){
+                if(!app.getGlobalState().isResolvableFault(fault))
+                    app.handleFault(fault);
+            }
+        }
+        assertEquals(scanned.getGlobalState(), compiled.getGlobalState());
+    }
+
+    @Test
+    public void unhandledFaultsTest(){
+        Requirement awReq = new Requirement("awReq", RequirementSort.REPLICA_AWARE);
+        Requirement unawReq = new Requirement("unawReq", RequirementSort.REPLICA_UNAWARE);
+        Requirement host = new Requirement("host", RequirementSort.CONTAINMENT);
+
+        //in "working", a fault of awReq can be handled by going to "degraded", one of unawReq cannot
+        //(and containment requirements are never faulted)
+        Node needy = new Node("needy", new ManagementProtocol("working"));
+        needy.addRequirement(awReq);
+        needy.addRequirement(unawReq);
+        needy.addRequirement(host);
+        ManagementProtocol mp = needy.getManProtocol();
+        mp.addState("degraded");
+        mp.getRho().get("working").add(awReq);
+        mp.getRho().get("working").add(unawReq);
+        mp.getRho().get("working").add(host);
+        mp.getRho().get("degraded").add(unawReq);
+        mp.getPhi().get("working").add("degraded");
+
+        Application app = new Application("app", PiVersion.GREEDYPI);
+        app.addNode(needy);
+
+        Map<String, Map<String, List<Requirement>>> unhandledFaults = app.getUnhandledFaults();
+        assertEquals("degraded", mp.getCompiled().getFaultHandlingState("working", awReq));
+        assertNull(mp.getCompiled().getFaultHandlingState("working", unawReq));
+        assertEquals(Arrays.asList("needy"), new ArrayList<>(unhandledFaults.keySet()));
+        assertEquals(Arrays.asList("working", "degraded"), new ArrayList<>(unhandledFaults.get("needy").keySet()));
+        assertEquals(Arrays.asList(unawReq), unhandledFaults.get("needy").get("working"));
+        assertEquals(Arrays.asList(unawReq), unhandledFaults.get("needy").get("degraded"));
+    }
+
+    @Test
+    public void changedProtocolTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            NodeUnknownException,
+            InstanceUnknownException,
+            RuleNotApplicableException,
+            FailedFaultHandlingExecption,
+            AlreadyUsedIDException
+    {
+        Requirement awReq = new Requirement("awReq", RequirementSort.REPLICA_AWARE);
+        Requirement unawReq = new Requirement("unawReq", RequirementSort.REPLICA_UNAWARE);
+
+        Node needy = new Node("needy", new ManagementProtocol("working"));
+        needy.addRequirement(awReq);
+        ManagementProtocol mp = needy.getManProtocol();
+        mp.addState("degraded");
+        mp.addState("stopped");
+        mp.getRho().get("working").add(awReq);
+        mp.getPhi().get("working").add("degraded");
+
+        Application app = new Application("app", PiVersion.GREEDYPI);
+        app.addNode(needy);
+        app.compileProtocols();
+        assertEquals("degraded", mp.getCompiled().getFaultHandlingState("working", awReq));
+
+        //changing phi discards the compiled tables, hence the fault is handled by the new first handler
+        mp.getPhi().get("working").add(0, "stopped");
+        assertNull(mp.getCompiled());
+        app.scaleOut("needy", "n1");
+        app.handleFault(new Fault("n1", awReq));
+        assertEquals("stopped", app.getGlobalState().getActiveInstances().get("n1").getCurrentState());
+
+        //as does changing the requirements of the node
+        app.compileProtocols();
+        needy.addRequirement(unawReq);
+        assertNull(mp.getCompiled());
+        app.compileProtocols();
+        assertEquals(1, mp.getCompiled().getReqID(unawReq));
+
+        //and the protocol is compiled again if its node has other requirements
+        CompiledProtocol compiled = mp.getCompiled();
+        mp.compile(needy.getReqs());
+        assertSame(compiled, mp.getCompiled());
+        mp.compile(Arrays.asList(awReq));
+        assertEquals(-1, mp.getCompiled().getReqID(unawReq));
+
+        //the states, the transitions and the requirements of a node are changed only by their methods
+        assertThrows(UnsupportedOperationException.class, () -> mp.getStates().add("unknown"));
+        assertThrows(UnsupportedOperationException.class, () -> mp.getRho().put("working", new ArrayList<>()));
+        assertThrows(UnsupportedOperationException.class, () -> needy.getReqs().add(unawReq));
+    }
+
+    private Transition scannedTransition(ManagementProtocol mp, String state, String op){
+        for(Transition t : mp.getTransitions().values()){
+            if(t.getStartState().equals(state) && t.getOp().equals(op))
+                return t;
+        }
+        return null;
+    }
+}
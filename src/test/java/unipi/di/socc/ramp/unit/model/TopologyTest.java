@@ -0,0 +1,68 @@
+package unipi.di.socc.ramp.unit.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.NodeCap;
+import unipi.di.socc.ramp.core.model.NodeReq;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+
+public class TopologyTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    public Application thinking;
+
+    @BeforeEach
+    public void before()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException
+    {
+        this.thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+    }
+
+    @Test
+    public void staticBindingTest(){
+        //the static bindings are looked up by name
+        for(NodeReq nodeReq : this.thinking.getBindingFunction().keySet())
+            assertEquals(
+                this.thinking.getBindingFunction().get(nodeReq),
+                this.thinking.getTopology().getStaticBinding(nodeReq.getNodeName(), nodeReq.getReqName())
+            );
+        assertNull(this.thinking.getTopology().getStaticBinding("api", "unknown"));
+        assertNull(this.thinking.getTopology().getStaticBinding("unknown", "backend"));
+
+        //the <node, capability> bound to a requirement is the canonical pair of the node
+        NodeCap backend = this.thinking.getTopology().getStaticBinding("gui", "backend");
+        assertSame(this.thinking.getTopology().getNodeCap(backend.getNodeName(), backend.getCap()), backend);
+    }
+
+    @Test
+    public void parsedNamesTest(){
+        //equal parsed names are the same String object
+        assertSame(
+            this.thinking.getGlobalState().getActiveInstances().get("a1").getID(),
+            this.thinking.getGlobalState().getRuntimeBindings().get("g1").get(1).getNodeInstanceID()
+        );
+        assertSame(
+            this.thinking.getGlobalState().getActiveInstances().get("a1").getCurrentState(),
+            this.thinking.getGlobalState().getActiveInstances().get("a2").getCurrentState()
+        );
+        assertSame(this.thinking.getNodes().get("api").getName(), this.thinking.getGlobalState().getActiveInstances().get("a1").getNodeTypeName());
+
+        //the copies share the topology
+        assertSame(this.thinking.getTopology(), this.thinking.clone().getTopology());
+    }
+}
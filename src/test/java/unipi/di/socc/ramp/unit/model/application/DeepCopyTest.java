@@ -1,5 +1,7 @@
 package unipi.di.socc.ramp.unit.model.application;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
@@ -8,7 +10,9 @@ import org.junit.jupiter.api.Test;
 
 import unipi.di.socc.ramp.cli.parser.Parser;
 import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
 import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
 
 public class DeepCopyTest {
     
@@ -30,5 +34,30 @@ public class DeepCopyTest {
 
     }
 
+    @Test
+    public void sharedTopologyTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            RuleNotApplicableException,
+            InstanceUnknownException
+    {
+        String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+        String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+        Application thinking = Parser.parseApplication(thinkingPath, thinkingGSPath);
+        Application thinkingClone = thinking.clone();
+
+        //only the global state is copied
+        assertSame(thinking.getTopology(), thinkingClone.getTopology());
+        assertSame(thinking.getNodes().get("api"), thinkingClone.getNodes().get("api"));
+
+        thinkingClone.scaleIn("n1");
+        assertFalse(thinking.equals(thinkingClone));
+        assertTrue(thinking.getGlobalState().getActiveInstances().containsKey("n1"));
+    }
+
 
 }
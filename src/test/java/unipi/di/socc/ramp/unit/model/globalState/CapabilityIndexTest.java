@@ -0,0 +1,210 @@
+package unipi.di.socc.ramp.unit.model.globalState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.GlobalState;
+import unipi.di.socc.ramp.core.model.ManagementProtocol;
+import unipi.di.socc.ramp.core.model.Node;
+import unipi.di.socc.ramp.core.model.NodeCap;
+import unipi.di.socc.ramp.core.model.NodeReq;
+import unipi.di.socc.ramp.core.model.PiVersion;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RequirementSort;
+import unipi.di.socc.ramp.core.model.exceptions.AlreadyUsedIDException;
+import unipi.di.socc.ramp.core.model.exceptions.FailedOperationException;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.OperationNotAvailableException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class CapabilityIndexTest {
+
+    //the capability index gives the instances currently offering each capability
+    //vm v1 (offering host) contains the servers s1 and s2 (offering endpoint only when running)
+
+    public Application testApp;
+    public Requirement contReq;
+    public Requirement backendReq;
+    public NodeCap endpoint;
+    public NodeCap host;
+
+    @BeforeEach
+    public void before()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            NodeUnknownException,
+            AlreadyUsedIDException,
+            RuleNotApplicableException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            FailedOperationException
+    {
+        this.contReq = new Requirement("contReq", RequirementSort.CONTAINMENT);
+        this.backendReq = new Requirement("backendReq", RequirementSort.REPLICA_UNAWARE);
+
+        this.testApp = new Application("testApp", PiVersion.GREEDYPI);
+        this.testApp.addNode(this.createVM());
+        this.testApp.addNode(this.createServer());
+        this.testApp.addNode(this.createClient());
+
+        this.testApp.addStaticBinding(new NodeReq("server", "contReq"), new NodeCap("vm", "host"));
+        this.testApp.addStaticBinding(new NodeReq("client", "backendReq"), new NodeCap("server", "endpoint"));
+        this.endpoint = this.testApp.getTopology().getStaticBinding("client", "backendReq");
+        this.host = this.testApp.getTopology().getStaticBinding("server", "contReq");
+
+        this.testApp.getGlobalState().buildIndexes();
+        this.testApp.scaleOut("vm", "v1");
+        for(String serverID : Arrays.asList("s1", "s2")){
+            this.testApp.scaleOutC("server", serverID, "v1");
+            this.testApp.opStart(serverID, "start");
+            this.testApp.opEnd(serverID, "start");
+        }
+    }
+
+    @Test
+    public void stopOfferingTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            FailedOperationException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+        assertEquals(this.ids("s1", "s2"), gs.getInstancesOffering(this.endpoint));
+
+        //s1 stops offering the endpoint as soon as the stop starts (the transition offers nothing)
+        this.testApp.opStart("s1", "stop");
+        assertEquals(this.ids("s2"), gs.getInstancesOffering(this.endpoint));
+        this.testApp.opEnd("s1", "stop");
+        assertEquals(this.ids("s2"), gs.getInstancesOffering(this.endpoint));
+
+        //and offers it again once it is running
+        this.testApp.opStart("s1", "start");
+        this.testApp.opEnd("s1", "start");
+        assertEquals(this.ids("s1", "s2"), gs.getInstancesOffering(this.endpoint));
+
+        //the capabilities of the other node types are not touched
+        assertEquals(this.ids("v1"), gs.getInstancesOffering(this.host));
+    }
+
+    @Test
+    public void removedInstancesTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException,
+            AlreadyUsedIDException,
+            NodeUnknownException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //a new server is stopped, hence it offers no endpoint
+        this.testApp.scaleOutC("server", "s3", "v1");
+        assertEquals(this.ids("s1", "s2"), gs.getInstancesOffering(this.endpoint));
+
+        //a killed server is removed from the index
+        this.testApp.scaleIn("s2");
+        assertEquals(this.ids("s1"), gs.getInstancesOffering(this.endpoint));
+
+        //killing the vm removes also the servers it contains
+        this.testApp.scaleIn("v1");
+        assertTrue(gs.getInstancesOffering(this.host).isEmpty());
+        assertTrue(gs.getInstancesOffering(this.endpoint).isEmpty());
+    }
+
+    @Test
+    public void greedyPiTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            AlreadyUsedIDException,
+            RuleNotApplicableException,
+            NodeUnknownException
+    {
+        //both s1 and s2 offer the endpoint: greedy pi picks the lowest id
+        this.testApp.scaleOut("client", "c1");
+        assertEquals("s1", this.testApp.pi("c1", this.backendReq).getID());
+
+        //the lowest id still offering the endpoint
+        this.testApp.opStart("s1", "stop");
+        assertEquals("s2", this.testApp.pi("c1", this.backendReq).getID());
+
+        //no server offering it
+        this.testApp.opStart("s2", "stop");
+        assertEquals(null, this.testApp.pi("c1", this.backendReq));
+    }
+
+    @Test
+    public void forkCopyOnWriteTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException
+    {
+        this.testApp.getGlobalState().makePersistent();
+        Application fork = this.testApp.fork();
+
+        //the fork shares the index until it changes it
+        fork.opStart("s1", "stop");
+        assertEquals(this.ids("s2"), fork.getGlobalState().getInstancesOffering(this.endpoint));
+        assertEquals(this.ids("s1", "s2"), this.testApp.getGlobalState().getInstancesOffering(this.endpoint));
+
+        //and the changes of the forked application do not reach the fork
+        this.testApp.scaleIn("v1");
+        assertTrue(this.testApp.getGlobalState().getInstancesOffering(this.endpoint).isEmpty());
+        assertEquals(this.ids("s2"), fork.getGlobalState().getInstancesOffering(this.endpoint));
+        assertEquals(this.ids("v1"), fork.getGlobalState().getInstancesOffering(this.host));
+    }
+
+    public Node createVM(){
+        Node vm = new Node("vm", new ManagementProtocol("running"));
+        vm.addCapability("host");
+        vm.getManProtocol().getGamma().get("running").add("host");
+        return vm;
+    }
+
+    public Node createServer(){
+        //stopped -start-> running -stop-> stopped, contained in a vm in each state
+        Node server = new Node("server", new ManagementProtocol("stopped"));
+        server.addRequirement(this.contReq);
+        server.addCapability("endpoint");
+        server.addOperation("start");
+        server.addOperation("stop");
+
+        ManagementProtocol serverMP = server.getManProtocol();
+        serverMP.addState("running");
+        serverMP.addTransition("stopped", "start", "running");
+        serverMP.addTransition("running", "stop", "stopped");
+        for(String state : serverMP.getStates())
+            serverMP.getRho().get(state).add(this.contReq);
+        serverMP.getGamma().get("running").add("endpoint");
+
+        return server;
+    }
+
+    public Node createClient(){
+        Node client = new Node("client", new ManagementProtocol("working"));
+        client.addRequirement(this.backendReq);
+        client.getManProtocol().getRho().get("working").add(this.backendReq);
+        return client;
+    }
+
+    private TreeSet<String> ids(String... ids){
+        return new TreeSet<>(Arrays.asList(ids));
+    }
+}
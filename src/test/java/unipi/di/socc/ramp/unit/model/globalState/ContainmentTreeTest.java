@@ -0,0 +1,184 @@
+package unipi.di.socc.ramp.unit.model.globalState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.GlobalState;
+import unipi.di.socc.ramp.core.model.ManagementProtocol;
+import unipi.di.socc.ramp.core.model.Node;
+import unipi.di.socc.ramp.core.model.NodeCap;
+import unipi.di.socc.ramp.core.model.NodeInstance;
+import unipi.di.socc.ramp.core.model.NodeReq;
+import unipi.di.socc.ramp.core.model.PiVersion;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RequirementSort;
+import unipi.di.socc.ramp.core.model.exceptions.AlreadyUsedIDException;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class ContainmentTreeTest {
+
+    //the containment tree is given by the containment bindings of the reverse binding index
+    //vm v1 contains the runtime r1, which contains the services s1 and s2
+
+    public Application testApp;
+    public Requirement contReq;
+
+    @BeforeEach
+    public void before()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            NodeUnknownException,
+            AlreadyUsedIDException,
+            RuleNotApplicableException,
+            InstanceUnknownException
+    {
+        this.contReq = new Requirement("contReq", RequirementSort.CONTAINMENT);
+
+        this.testApp = new Application("testApp", PiVersion.GREEDYPI);
+        this.testApp.addNode(this.createContainer("vm", false));
+        this.testApp.addNode(this.createContainer("runtime", true));
+        this.testApp.addNode(this.createContainer("service", true));
+
+        this.testApp.addStaticBinding(new NodeReq("runtime", "contReq"), new NodeCap("vm", "contCap"));
+        this.testApp.addStaticBinding(new NodeReq("service", "contReq"), new NodeCap("runtime", "contCap"));
+
+        this.testApp.getGlobalState().buildIndexes();
+        this.testApp.scaleOut("vm", "v1");
+        this.testApp.scaleOutC("runtime", "r1", "v1");
+        this.testApp.scaleOutC("service", "s1", "r1");
+        this.testApp.scaleOutC("service", "s2", "r1");
+    }
+
+    @Test
+    public void subtreeTest(){
+        GlobalState gs = this.testApp.getGlobalState();
+
+        assertEquals(Arrays.asList("r1"), gs.getContainedInstances("v1"));
+        assertEquals(Arrays.asList("s1", "s2"), this.sorted(gs.getContainedInstances("r1")));
+        assertTrue(gs.getContainedInstances("s1").isEmpty());
+
+        //each container comes before the instances it contains
+        List<String> subtree = new ArrayList<>(gs.getContainmentSubtree("v1"));
+        assertEquals(Arrays.asList("v1", "r1"), subtree.subList(0, 2));
+        assertEquals(Arrays.asList("s1", "s2"), this.sorted(subtree.subList(2, 4)));
+    }
+
+    @Test
+    public void nestedTeardownTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //killing a service leaves the rest of the tree
+        this.testApp.scaleIn("s2");
+        assertEquals(Arrays.asList("r1", "s1", "v1"), this.activeIDs());
+        assertEquals(Arrays.asList("s1"), gs.getContainedInstances("r1"));
+
+        //killing the vm kills the runtime and (transitively) the service
+        this.testApp.scaleIn("v1");
+        assertTrue(this.activeIDs().isEmpty());
+        assertTrue(gs.getBrokenInstances().isEmpty());
+    }
+
+    @Test
+    public void brokenInstancesTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //r1 loses its container, hence it is broken (its services are not, r1 is still active)
+        gs.removeRuntimeBinding("r1", this.contReq);
+        assertEquals(Arrays.asList("r1"), this.brokenIDs());
+        assertFalse(gs.isBrokenInstance("s1"));
+        assertTrue(gs.getContainedInstances("v1").isEmpty());
+
+        //killing v1 does not reach r1 through the tree, but the broken r1 is destroyed with its services
+        this.testApp.scaleIn("v1");
+        assertTrue(this.activeIDs().isEmpty());
+        assertTrue(this.brokenIDs().isEmpty());
+    }
+
+    @Test
+    public void forkCopyOnWriteTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException
+    {
+        this.testApp.getGlobalState().makePersistent();
+        Application fork = this.testApp.fork();
+        GlobalState forkGS = fork.getGlobalState();
+
+        //the fork shares the tree until it tears it down
+        fork.scaleIn("r1");
+        assertEquals(Arrays.asList("v1"), new ArrayList<>(forkGS.getContainmentSubtree("v1")));
+        assertEquals(Arrays.asList("v1"), this.sorted(forkGS.getActiveInstances().keySet()));
+        assertEquals(4, this.testApp.getGlobalState().getContainmentSubtree("v1").size());
+
+        //and the changes of the forked application do not reach the fork
+        this.testApp.scaleIn("s1");
+        this.testApp.getGlobalState().removeRuntimeBinding("r1", this.contReq);
+        assertEquals(Arrays.asList("r1"), this.brokenIDs());
+        assertEquals(Arrays.asList("s2"), this.testApp.getGlobalState().getContainedInstances("r1"));
+        assertTrue(this.testApp.getGlobalState().getContainedInstances("v1").isEmpty());
+        assertTrue(forkGS.getBrokenInstances().isEmpty());
+        assertEquals(Arrays.asList("v1"), this.sorted(forkGS.getActiveInstances().keySet()));
+    }
+
+    //a container offering contCap, contained (through contReq) if contained = true
+    public Node createContainer(String name, boolean contained){
+        Node container = new Node(name, new ManagementProtocol("state"));
+        container.addCapability("contCap");
+        container.getManProtocol().getGamma().get("state").add("contCap");
+
+        if(contained){
+            container.addRequirement(this.contReq);
+            container.getManProtocol().getRho().get("state").add(this.contReq);
+        }
+        return container;
+    }
+
+    private List<String> brokenIDs()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException
+    {
+        List<String> brokenIDs = new ArrayList<>();
+        for(NodeInstance instance : this.testApp.getGlobalState().getBrokenInstances())
+            brokenIDs.add(instance.getID());
+        return this.sorted(brokenIDs);
+    }
+
+    private List<String> activeIDs(){
+        return this.sorted(this.testApp.getGlobalState().getActiveInstances().keySet());
+    }
+
+    private List<String> sorted(Collection<String> ids){
+        List<String> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        return sorted;
+    }
+}
@@ -0,0 +1,134 @@
+package unipi.di.socc.ramp.unit.model.globalState;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.TranspositionTable;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RuntimeBinding;
+import unipi.di.socc.ramp.core.model.Trail;
+import unipi.di.socc.ramp.core.model.exceptions.AlreadyUsedIDException;
+import unipi.di.socc.ramp.core.model.exceptions.FailedFaultHandlingExecption;
+import unipi.di.socc.ramp.core.model.exceptions.FailedOperationException;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.OperationNotAvailableException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class FingerprintTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    @Test
+    public void incrementalFingerprintTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException,
+            FailedFaultHandlingExecption,
+            AlreadyUsedIDException
+    {
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        long[] initialFingerprint = thinking.getGlobalState().getFingerprint();
+
+        Trail trail = new Trail();
+        thinking.getGlobalState().setTrail(trail);
+
+        //stopping a1 makes the backend of g1 fail
+        thinking.opStart("a1", "stop");
+        for(Fault fault : thinking.getGlobalState().getPendingFaults()){
+            if(thinking.getGlobalState().isResolvableFault(fault))
+                thinking.resolveFault(fault);
+            else
+                thinking.handleFault(fault);
+        }
+        thinking.scaleOutC("api", "a3", "m2");
+        thinking.scaleIn("n1");
+
+        //the fingerprint kept up to date is the one computed from scratch (by a clone)
+        long[] fingerprint = thinking.getGlobalState().getFingerprint();
+        assertArrayEquals(thinking.clone().getGlobalState().getFingerprint(), fingerprint);
+        assertFalse(Arrays.equals(initialFingerprint, fingerprint));
+
+        //undoing the changes restores the fingerprint
+        trail.rollback(0);
+        assertArrayEquals(initialFingerprint, thinking.getGlobalState().getFingerprint());
+    }
+
+    @Test
+    public void equalGlobalStatesTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException,
+            FailedOperationException
+    {
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        Application otherThinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+
+        thinking.opStart("a1", "stop");
+        thinking.opEnd("a1", "stop");
+        otherThinking.opStart("a1", "stop");
+        otherThinking.opEnd("a1", "stop");
+
+        assertEquals(thinking.getGlobalState(), otherThinking.getGlobalState());
+        assertEquals(thinking.getGlobalState().hashCode(), otherThinking.getGlobalState().hashCode());
+        assertArrayEquals(thinking.getGlobalState().getFingerprint(), otherThinking.getGlobalState().getFingerprint());
+    }
+
+    @Test
+    public void bindingOrderTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            InstanceUnknownException
+    {
+        //g1 has two bindings of its backend (to a1 and to a2), in different orders
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        Application otherThinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        List<RuntimeBinding> bindings = thinking.getGlobalState().getRuntimeBindings().get("g1");
+        List<RuntimeBinding> otherBindings = otherThinking.getGlobalState().getRuntimeBindings().get("g1");
+        Requirement backend = bindings.get(1).getReq();
+        bindings.add(new RuntimeBinding(backend, "a2"));
+        otherBindings.add(1, new RuntimeBinding(backend, "a2"));
+
+        //the two global states differ, and so do their fingerprints and their keys in the memo table
+        assertNotEquals(thinking.getGlobalState(), otherThinking.getGlobalState());
+        assertFalse(Arrays.equals(thinking.getGlobalState().getFingerprint(), otherThinking.getGlobalState().getFingerprint()));
+        TranspositionTable transpositionTable = new TranspositionTable();
+        assertNotEquals(transpositionTable.keyOf(thinking.getGlobalState(), 0), transpositionTable.keyOf(otherThinking.getGlobalState(), 0));
+
+        //removing the backend binding removes the last one, hence g1 is left bound to a1 in a state and to a2 in the other
+        thinking.getGlobalState().removeRuntimeBinding("g1", backend);
+        otherThinking.getGlobalState().removeRuntimeBinding("g1", backend);
+        assertEquals("a1", bindings.get(1).getNodeInstanceID());
+        assertEquals("a2", otherBindings.get(1).getNodeInstanceID());
+
+        //the fingerprints kept up to date are the ones computed from scratch (by a clone)
+        assertArrayEquals(thinking.clone().getGlobalState().getFingerprint(), thinking.getGlobalState().getFingerprint());
+        assertArrayEquals(otherThinking.clone().getGlobalState().getFingerprint(), otherThinking.getGlobalState().getFingerprint());
+        assertFalse(Arrays.equals(thinking.getGlobalState().getFingerprint(), otherThinking.getGlobalState().getFingerprint()));
+    }
+}
@@ -0,0 +1,232 @@
+package unipi.di.socc.ramp.unit.model.globalState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.GlobalState;
+import unipi.di.socc.ramp.core.model.ManagementProtocol;
+import unipi.di.socc.ramp.core.model.Node;
+import unipi.di.socc.ramp.core.model.NodeCap;
+import unipi.di.socc.ramp.core.model.NodeReq;
+import unipi.di.socc.ramp.core.model.PiVersion;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RequirementSort;
+import unipi.di.socc.ramp.core.model.exceptions.AlreadyUsedIDException;
+import unipi.di.socc.ramp.core.model.exceptions.FailedFaultHandlingExecption;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.OperationNotAvailableException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class PendingFaultsIndexTest {
+
+    //the pending faults index keeps the faults of the instances changed since the last query
+    //vm v1 contains the servers s1 and s2 (offering endpoint when running), the client c1 is bound to s1
+
+    public Application testApp;
+    public Requirement contReq;
+    public Requirement backendReq;
+    public Fault c1Fault;
+
+    @BeforeEach
+    public void before()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            NodeUnknownException,
+            AlreadyUsedIDException,
+            RuleNotApplicableException,
+            InstanceUnknownException
+    {
+        this.contReq = new Requirement("contReq", RequirementSort.CONTAINMENT);
+        this.backendReq = new Requirement("backendReq", RequirementSort.REPLICA_UNAWARE);
+        this.c1Fault = new Fault("c1", this.backendReq);
+
+        this.testApp = new Application("testApp", PiVersion.GREEDYPI);
+        this.testApp.addNode(this.createVM());
+        this.testApp.addNode(this.createServer());
+        this.testApp.addNode(this.createClient());
+
+        this.testApp.addStaticBinding(new NodeReq("server", "contReq"), new NodeCap("vm", "host"));
+        this.testApp.addStaticBinding(new NodeReq("client", "backendReq"), new NodeCap("server", "endpoint"));
+
+        this.testApp.getGlobalState().buildIndexes();
+        this.testApp.scaleOut("vm", "v1");
+        this.testApp.scaleOutC("server", "s1", "v1");
+        this.testApp.scaleOutC("server", "s2", "v1");
+        this.testApp.scaleOut("client", "c1");
+    }
+
+    @Test
+    public void stopOfferingTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+        assertTrue(gs.getPendingFaults().isEmpty());
+
+        //s1 stops offering the endpoint bound to c1, which s2 still offers
+        this.testApp.opStart("s1", "stop");
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults("c1"));
+        assertTrue(gs.getPendingFaults("s1").isEmpty());
+        assertEquals(Arrays.asList(this.c1Fault), gs.getResolvableFaults());
+
+        //no other server offers it once s2 stops too
+        this.testApp.opStart("s2", "stop");
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        assertTrue(gs.getResolvableFaults().isEmpty());
+    }
+
+    @Test
+    public void resolveAndHandleTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException,
+            FailedFaultHandlingExecption
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //resolving the fault binds c1 to s2, and the index forgets it
+        this.testApp.opStart("s1", "stop");
+        this.testApp.resolveFault(this.c1Fault);
+        assertTrue(gs.getPendingFaults().isEmpty());
+        assertEquals("c1", gs.getBindingsTo("s2").get(0).getNodeInstanceID());
+
+        //handling the fault moves c1 where it needs no backend, and the index forgets it
+        this.testApp.opStart("s2", "stop");
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        this.testApp.handleFault(this.c1Fault);
+        assertEquals("degraded", gs.getActiveInstances().get("c1").getCurrentState());
+        assertTrue(gs.getPendingFaults().isEmpty());
+    }
+
+    @Test
+    public void removedInstancesTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException,
+            AlreadyUsedIDException,
+            NodeUnknownException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //a killed server faults its clients
+        this.testApp.scaleIn("s1");
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        //and a killed client takes its faults with it
+        this.testApp.scaleIn("c1");
+        assertTrue(gs.getPendingFaults().isEmpty());
+
+        //an unbound client is faulted (even if it could be bound again)
+        this.testApp.scaleOut("client", "c2");
+        gs.removeRuntimeBinding("c2", this.backendReq);
+        assertEquals(Arrays.asList(new Fault("c2", this.backendReq)), gs.getPendingFaults());
+        assertFalse(gs.getResolvableFaults().isEmpty());
+    }
+
+    @Test
+    public void removedContainerTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //containment requirements are never faulted (s2 is broken instead)
+        gs.removeRuntimeBinding("s2", this.contReq);
+        assertTrue(gs.isBrokenInstance("s2"));
+        assertTrue(gs.getPendingFaults().isEmpty());
+
+        //killing the vm kills its servers (and the broken s2): c1 is faulted with no server left
+        this.testApp.scaleIn("v1");
+        assertEquals(Arrays.asList("c1"), new ArrayList<>(gs.getActiveInstances().keySet()));
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        assertTrue(gs.getResolvableFaults().isEmpty());
+    }
+
+    @Test
+    public void forkCopyOnWriteTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException
+    {
+        this.testApp.getGlobalState().makePersistent();
+        Application fork = this.testApp.fork();
+        GlobalState forkGS = fork.getGlobalState();
+
+        //the faults of the fork are not visible to the forked application
+        fork.opStart("s1", "stop");
+        assertEquals(Arrays.asList(this.c1Fault), forkGS.getPendingFaults());
+        assertTrue(this.testApp.getGlobalState().getPendingFaults().isEmpty());
+
+        //and the other way round
+        this.testApp.scaleIn("c1");
+        fork.resolveFault(this.c1Fault);
+        assertTrue(forkGS.getPendingFaults().isEmpty());
+        this.testApp.scaleIn("s2");
+        assertTrue(this.testApp.getGlobalState().getPendingFaults().isEmpty());
+        assertEquals("s2", forkGS.getRuntimeBindings().get("c1").get(0).getNodeInstanceID());
+        assertTrue(forkGS.getPendingFaults().isEmpty());
+    }
+
+    public Node createVM(){
+        Node vm = new Node("vm", new ManagementProtocol("running"));
+        vm.addCapability("host");
+        vm.getManProtocol().getGamma().get("running").add("host");
+        return vm;
+    }
+
+    public Node createServer(){
+        //running -stop-> stopped, contained in a vm in each state
+        Node server = new Node("server", new ManagementProtocol("running"));
+        server.addRequirement(this.contReq);
+        server.addCapability("endpoint");
+        server.addOperation("stop");
+
+        ManagementProtocol serverMP = server.getManProtocol();
+        serverMP.addState("stopped");
+        serverMP.addTransition("running", "stop", "stopped");
+        for(String state : serverMP.getStates())
+            serverMP.getRho().get(state).add(this.contReq);
+        serverMP.getGamma().get("running").add("endpoint");
+
+        return server;
+    }
+
+    public Node createClient(){
+        //needs the backend while working, and goes degraded (needing nothing) if it fails
+        Node client = new Node("client", new ManagementProtocol("working"));
+        client.addRequirement(this.backendReq);
+
+        ManagementProtocol clientMP = client.getManProtocol();
+        clientMP.addState("degraded");
+        clientMP.getRho().get("working").add(this.backendReq);
+        clientMP.getPhi().get("working").add("degraded");
+
+        return client;
+    }
+}
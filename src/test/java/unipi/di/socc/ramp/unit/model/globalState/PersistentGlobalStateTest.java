@@ -0,0 +1,142 @@
+package unipi.di.socc.ramp.unit.model.globalState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.PersistentHashMap;
+import unipi.di.socc.ramp.core.model.exceptions.FailedFaultHandlingExecption;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.OperationNotAvailableException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class PersistentGlobalStateTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    @Test
+    public void persistentHashMapTest(){
+        PersistentHashMap<String, Integer> map = new PersistentHashMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+
+        for(int i = 0; i < 2000; i++){
+            map.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        //"Aa" and "BB" have the same hash code
+        map.put("Aa", -1);
+        map.put("BB", -2);
+        expected.put("Aa", -1);
+        expected.put("BB", -2);
+        assertEquals(expected, map);
+
+        PersistentHashMap<String, Integer> fork = map.fork();
+        for(int i = 0; i < 2000; i += 2)
+            fork.remove("key" + i);
+        fork.remove("Aa");
+        fork.put("key1", 42);
+
+        //the changes of the fork are not visible to the original map
+        assertEquals(expected, map);
+        assertEquals(1001, fork.size());
+        assertNull(fork.get("key0"));
+        assertNull(fork.get("Aa"));
+        assertEquals(-2, fork.get("BB"));
+        assertEquals(42, fork.get("key1"));
+        assertEquals(1, map.get("key1"));
+    }
+
+    @Test
+    public void forkTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException,
+            FailedFaultHandlingExecption
+    {
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        thinking.getGlobalState().makePersistent();
+        Application initialThinking = thinking.clone();
+
+        Application fork = thinking.fork();
+        assertTrue(fork.getGlobalState().isPersistent());
+        assertTrue(fork.equals(thinking));
+
+        //stopping a1 makes the backend of g1 fail
+        fork.opStart("a1", "stop");
+        for(Fault fault : fork.getGlobalState().getPendingFaults()){
+            if(fork.getGlobalState().isResolvableFault(fault))
+                fork.resolveFault(fault);
+            else
+                fork.handleFault(fault);
+        }
+        //killing n1 kills the instances it contains
+        fork.scaleIn("n1");
+
+        //the changes of the fork are not visible to the forked application
+        assertFalse(fork.equals(thinking));
+        assertTrue(thinking.equals(initialThinking));
+    }
+
+    @Test
+    public void sameVerdictTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        String[] plans = {
+            "reconfigure-gui-api/plan",
+            "restart-node-maven/plan",
+            "undeployment/plan",
+            "undeployment/refactored-plan"
+        };
+
+        for(String plan : plans){
+            String planPath = System.getProperty("user.dir").concat("/data/thinking-app/" + plan + ".json");
+
+            Analyzer cloning = new Analyzer();
+            boolean cloningVerdict = cloning.planAnalysis(
+                Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                Parser.parsePlan(planPath),
+                "--valid"
+            );
+
+            Analyzer forking = new Analyzer();
+            forking.setPersistentStates(true);
+            boolean forkingVerdict = forking.planAnalysis(
+                Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                Parser.parsePlan(planPath),
+                "--valid"
+            );
+
+            assertEquals(cloningVerdict, forkingVerdict);
+            if(!cloningVerdict){
+                assertEquals(cloning.getReport().getFailedAction(), forking.getReport().getFailedAction());
+                assertEquals(cloning.getReport().getGlobalState(), forking.getReport().getGlobalState());
+            }
+        }
+    }
+}
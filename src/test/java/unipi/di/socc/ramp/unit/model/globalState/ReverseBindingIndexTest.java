@@ -0,0 +1,171 @@
+package unipi.di.socc.ramp.unit.model.globalState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.GlobalState;
+import unipi.di.socc.ramp.core.model.ManagementProtocol;
+import unipi.di.socc.ramp.core.model.Node;
+import unipi.di.socc.ramp.core.model.NodeCap;
+import unipi.di.socc.ramp.core.model.NodeReq;
+import unipi.di.socc.ramp.core.model.PiVersion;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RequirementSort;
+import unipi.di.socc.ramp.core.model.RuntimeBinding;
+import unipi.di.socc.ramp.core.model.exceptions.AlreadyUsedIDException;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class ReverseBindingIndexTest {
+
+    //the reverse binding index gives, for each server, the runtime bindings <req, client> bound to it
+    //the clients c1 and c2 are both bound to s1 (greedy pi), s2 serves no one
+
+    public Application testApp;
+    public Requirement backendReq;
+
+    @BeforeEach
+    public void before()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            NodeUnknownException,
+            AlreadyUsedIDException,
+            RuleNotApplicableException,
+            InstanceUnknownException
+    {
+        this.backendReq = new Requirement("backendReq", RequirementSort.REPLICA_UNAWARE);
+
+        this.testApp = new Application("testApp", PiVersion.GREEDYPI);
+        this.testApp.addNode(this.createServer());
+        this.testApp.addNode(this.createClient());
+        this.testApp.addStaticBinding(new NodeReq("client", "backendReq"), new NodeCap("server", "endpoint"));
+
+        this.testApp.getGlobalState().buildIndexes();
+        this.testApp.scaleOut("server", "s1");
+        this.testApp.scaleOut("server", "s2");
+        this.testApp.scaleOut("client", "c1");
+        this.testApp.scaleOut("client", "c2");
+    }
+
+    @Test
+    public void bindingsToTest(){
+        GlobalState gs = this.testApp.getGlobalState();
+
+        assertEquals(this.bindings("c1", "c2"), this.bindingsTo(gs, "s1"));
+        assertTrue(gs.getBindingsTo("s2").isEmpty());
+        //clients serve no one, and unknown instances have no bindings to them
+        assertTrue(gs.getBindingsTo("c1").isEmpty());
+        assertTrue(gs.getBindingsTo("unknownID").isEmpty());
+    }
+
+    @Test
+    public void duplicateBindingsTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //c1 bound twice to s1 for the same requirement: removing one binding leaves the other one
+        gs.addRuntimeBinding("c1", this.backendReq, "s1");
+        assertEquals(this.bindings("c1", "c1", "c2"), this.bindingsTo(gs, "s1"));
+        gs.removeRuntimeBinding("c1", this.backendReq);
+        assertEquals(this.bindings("c1", "c2"), this.bindingsTo(gs, "s1"));
+
+        //c1 bound also to s2: the last binding (the one to s2) is removed first
+        gs.addRuntimeBinding("c1", this.backendReq, "s2");
+        assertEquals(this.bindings("c1"), this.bindingsTo(gs, "s2"));
+        gs.removeRuntimeBinding("c1", this.backendReq);
+        assertTrue(gs.getBindingsTo("s2").isEmpty());
+        assertEquals(this.bindings("c1", "c2"), this.bindingsTo(gs, "s1"));
+    }
+
+    @Test
+    public void removedInstancesTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //an unbound client leaves the index of its server
+        gs.removeRuntimeBinding("c1", this.backendReq);
+        assertEquals(this.bindings("c2"), this.bindingsTo(gs, "s1"));
+
+        //so does a killed client
+        this.testApp.scaleIn("c2");
+        assertTrue(gs.getBindingsTo("s1").isEmpty());
+
+        //killing a server removes the bindings to it, also from its clients
+        gs.addRuntimeBinding("c1", this.backendReq, "s2");
+        this.testApp.scaleIn("s2");
+        assertTrue(gs.getBindingsTo("s2").isEmpty());
+        assertTrue(gs.getRuntimeBindings().get("c1").isEmpty());
+    }
+
+    @Test
+    public void forkCopyOnWriteTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException
+    {
+        this.testApp.getGlobalState().makePersistent();
+        Application fork = this.testApp.fork();
+        GlobalState forkGS = fork.getGlobalState();
+
+        //the fork shares the index until it changes it
+        forkGS.addRuntimeBinding("c1", this.backendReq, "s2");
+        fork.scaleIn("c2");
+        assertEquals(this.bindings("c1"), this.bindingsTo(forkGS, "s1"));
+        assertEquals(this.bindings("c1"), this.bindingsTo(forkGS, "s2"));
+        assertEquals(this.bindings("c1", "c2"), this.bindingsTo(this.testApp.getGlobalState(), "s1"));
+        assertTrue(this.testApp.getGlobalState().getBindingsTo("s2").isEmpty());
+
+        //and the changes of the forked application do not reach the fork
+        this.testApp.scaleIn("s1");
+        assertTrue(this.testApp.getGlobalState().getBindingsTo("s1").isEmpty());
+        assertEquals(this.bindings("c1"), this.bindingsTo(forkGS, "s1"));
+    }
+
+    public Node createServer(){
+        Node server = new Node("server", new ManagementProtocol("running"));
+        server.addCapability("endpoint");
+        server.getManProtocol().getGamma().get("running").add("endpoint");
+        return server;
+    }
+
+    public Node createClient(){
+        Node client = new Node("client", new ManagementProtocol("working"));
+        client.addRequirement(this.backendReq);
+        client.getManProtocol().getRho().get("working").add(this.backendReq);
+        return client;
+    }
+
+    //the reverse bindings <backendReq, client> of the given clients, sorted by client
+    private List<RuntimeBinding> bindings(String... clientIDs){
+        List<RuntimeBinding> bindings = new ArrayList<>();
+        for(String clientID : clientIDs)
+            bindings.add(new RuntimeBinding(this.backendReq, clientID));
+        return bindings;
+    }
+
+    private List<RuntimeBinding> bindingsTo(GlobalState gs, String serverID){
+        List<RuntimeBinding> bindingsTo = new ArrayList<>(gs.getBindingsTo(serverID));
+        bindingsTo.sort((first, second) -> first.getNodeInstanceID().compareTo(second.getNodeInstanceID()));
+        return bindingsTo;
+    }
+}
@@ -0,0 +1,221 @@
+package unipi.di.socc.ramp.unit.model.globalState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.GlobalState;
+import unipi.di.socc.ramp.core.model.ManagementProtocol;
+import unipi.di.socc.ramp.core.model.Node;
+import unipi.di.socc.ramp.core.model.NodeCap;
+import unipi.di.socc.ramp.core.model.NodeReq;
+import unipi.di.socc.ramp.core.model.PiVersion;
+import unipi.di.socc.ramp.core.model.Requirement;
+import unipi.di.socc.ramp.core.model.RequirementSort;
+import unipi.di.socc.ramp.core.model.RuntimeBinding;
+import unipi.di.socc.ramp.core.model.exceptions.AlreadyUsedIDException;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.OperationNotAvailableException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class SatisfiedReqsIndexTest {
+
+    //the satisfied requirements of each instance are kept as bitsets of its compiled protocol, and used
+    //to find its pending faults and the requirements to bind (see addNewRuntimeBindings)
+    //vm v1 contains the servers s1 and s2 (offering endpoint when running), the client c1 is bound to s1
+
+    public Application testApp;
+    public Requirement contReq;
+    public Requirement backendReq;
+    public Fault c1Fault;
+
+    @BeforeEach
+    public void before()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            NodeUnknownException,
+            AlreadyUsedIDException,
+            RuleNotApplicableException,
+            InstanceUnknownException
+    {
+        this.contReq = new Requirement("contReq", RequirementSort.CONTAINMENT);
+        this.backendReq = new Requirement("backendReq", RequirementSort.REPLICA_UNAWARE);
+        this.c1Fault = new Fault("c1", this.backendReq);
+
+        this.testApp = new Application("testApp", PiVersion.GREEDYPI);
+        this.testApp.addNode(this.createVM());
+        this.testApp.addNode(this.createServer());
+        this.testApp.addNode(this.createClient());
+
+        this.testApp.addStaticBinding(new NodeReq("server", "contReq"), new NodeCap("vm", "host"));
+        this.testApp.addStaticBinding(new NodeReq("client", "backendReq"), new NodeCap("server", "endpoint"));
+
+        this.testApp.compileProtocols();
+        this.testApp.getGlobalState().buildIndexes();
+        this.testApp.scaleOut("vm", "v1");
+        this.testApp.scaleOutC("server", "s1", "v1");
+        this.testApp.scaleOutC("server", "s2", "v1");
+        this.testApp.scaleOut("client", "c1");
+    }
+
+    @Test
+    public void stopOfferingTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //the backend of c1 is satisfied, hence it is not bound again
+        gs.addNewRuntimeBindings("c1");
+        assertEquals(Arrays.asList("s1"), this.serverIDs(gs, "c1"));
+
+        //s1 stops offering the endpoint: the binding is kept, but the backend is no longer satisfied
+        this.testApp.opStart("s1", "stop");
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        gs.addNewRuntimeBindings("c1");
+        assertEquals(Arrays.asList("s1", "s2"), this.serverIDs(gs, "c1"));
+        assertTrue(gs.getPendingFaults().isEmpty());
+    }
+
+    @Test
+    public void duplicateBindingsTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //c1 bound to both servers: removing the last binding keeps the backend satisfied
+        gs.addRuntimeBinding("c1", this.backendReq, "s2");
+        gs.removeRuntimeBinding("c1", this.backendReq);
+        assertTrue(gs.getPendingFaults().isEmpty());
+        gs.addNewRuntimeBindings("c1");
+        assertEquals(Arrays.asList("s1"), this.serverIDs(gs, "c1"));
+
+        //an unbound client is no longer satisfied, and it is bound again
+        gs.removeRuntimeBinding("c1", this.backendReq);
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        gs.addNewRuntimeBindings("c1");
+        assertEquals(Arrays.asList("s1"), this.serverIDs(gs, "c1"));
+        assertTrue(gs.getPendingFaults().isEmpty());
+    }
+
+    @Test
+    public void removedServersTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            RuleNotApplicableException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //a killed server unsatisfies the requirements bound to it
+        this.testApp.scaleIn("s1");
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        gs.addNewRuntimeBindings("c1");
+        assertEquals(Arrays.asList("s2"), this.serverIDs(gs, "c1"));
+
+        //and so does killing their container
+        this.testApp.scaleIn("v1");
+        assertEquals(Arrays.asList(this.c1Fault), gs.getPendingFaults());
+        gs.addNewRuntimeBindings("c1");
+        assertTrue(this.serverIDs(gs, "c1").isEmpty());
+    }
+
+    @Test
+    public void reqNotCompiledTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException
+    {
+        GlobalState gs = this.testApp.getGlobalState();
+
+        //a binding of a requirement with the same name but another sort (e.g. read from a global state)
+        //has no bit in the compiled protocol: the requirement is satisfied by name
+        Requirement otherSort = new Requirement("backendReq", RequirementSort.REPLICA_AWARE);
+        gs.removeRuntimeBinding("c1", this.backendReq);
+        gs.addRuntimeBinding("c1", otherSort, "s2");
+        assertTrue(gs.getPendingFaults().isEmpty());
+    }
+
+    @Test
+    public void forkCopyOnWriteTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException
+    {
+        this.testApp.getGlobalState().makePersistent();
+        Application fork = this.testApp.fork();
+        GlobalState forkGS = fork.getGlobalState();
+
+        //the fork shares the bitsets until it changes them
+        fork.opStart("s1", "stop");
+        forkGS.addNewRuntimeBindings("c1");
+        assertEquals(Arrays.asList("s1", "s2"), this.serverIDs(forkGS, "c1"));
+        this.testApp.getGlobalState().addNewRuntimeBindings("c1");
+        assertEquals(Arrays.asList("s1"), this.serverIDs(this.testApp.getGlobalState(), "c1"));
+
+        //and the changes of the forked application do not reach the fork
+        this.testApp.scaleIn("s2");
+        assertTrue(forkGS.getPendingFaults().isEmpty());
+        assertEquals(Arrays.asList("s1", "s2"), this.serverIDs(forkGS, "c1"));
+    }
+
+    public Node createVM(){
+        Node vm = new Node("vm", new ManagementProtocol("running"));
+        vm.addCapability("host");
+        vm.getManProtocol().getGamma().get("running").add("host");
+        return vm;
+    }
+
+    public Node createServer(){
+        //running -stop-> stopped, contained in a vm in each state
+        Node server = new Node("server", new ManagementProtocol("running"));
+        server.addRequirement(this.contReq);
+        server.addCapability("endpoint");
+        server.addOperation("stop");
+
+        ManagementProtocol serverMP = server.getManProtocol();
+        serverMP.addState("stopped");
+        serverMP.addTransition("running", "stop", "stopped");
+        for(String state : serverMP.getStates())
+            serverMP.getRho().get(state).add(this.contReq);
+        serverMP.getGamma().get("running").add("endpoint");
+
+        return server;
+    }
+
+    public Node createClient(){
+        Node client = new Node("client", new ManagementProtocol("working"));
+        client.addRequirement(this.backendReq);
+        client.getManProtocol().getRho().get("working").add(this.backendReq);
+        return client;
+    }
+
+    //ids of the servers instanceID is bound to, in binding order
+    private List<String> serverIDs(GlobalState gs, String instanceID){
+        List<String> serverIDs = new ArrayList<>();
+        for(RuntimeBinding runtimeBinding : gs.getRuntimeBindings().get(instanceID))
+            serverIDs.add(runtimeBinding.getNodeInstanceID());
+        return serverIDs;
+    }
+}
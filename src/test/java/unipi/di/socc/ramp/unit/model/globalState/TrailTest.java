@@ -0,0 +1,106 @@
+package unipi.di.socc.ramp.unit.model.globalState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Analyzer;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+import unipi.di.socc.ramp.core.analyzer.exceptions.UnsupportedAnalysisException;
+import unipi.di.socc.ramp.core.model.Application;
+import unipi.di.socc.ramp.core.model.Fault;
+import unipi.di.socc.ramp.core.model.Trail;
+import unipi.di.socc.ramp.core.model.exceptions.FailedFaultHandlingExecption;
+import unipi.di.socc.ramp.core.model.exceptions.InstanceUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.NodeUnknownException;
+import unipi.di.socc.ramp.core.model.exceptions.OperationNotAvailableException;
+import unipi.di.socc.ramp.core.model.exceptions.RuleNotApplicableException;
+
+public class TrailTest {
+
+    private final String thinkingPath = System.getProperty("user.dir").concat("/data/thinking-app/thinking.json");
+    private final String thinkingGSPath = System.getProperty("user.dir").concat("/data/thinking-app/running-globalstate.json");
+
+    @Test
+    public void rollbackTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            InstanceUnknownException,
+            OperationNotAvailableException,
+            RuleNotApplicableException,
+            FailedFaultHandlingExecption
+    {
+        Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+        Application initialThinking = thinking.clone();
+
+        Trail trail = new Trail();
+        thinking.getGlobalState().setTrail(trail);
+        int mark = trail.mark();
+
+        //stopping a1 makes the backend of g1 fail
+        thinking.opStart("a1", "stop");
+        for(Fault fault : thinking.getGlobalState().getPendingFaults()){
+            if(thinking.getGlobalState().isResolvableFault(fault))
+                thinking.resolveFault(fault);
+            else
+                thinking.handleFault(fault);
+        }
+        //killing n1 kills the instances it contains
+        thinking.scaleIn("n1");
+        assertFalse(thinking.equals(initialThinking));
+
+        trail.rollback(mark);
+        assertTrue(thinking.equals(initialThinking));
+    }
+
+    @Test
+    public void sameVerdictTest()
+        throws
+            NullPointerException,
+            IllegalArgumentException,
+            IOException,
+            NodeUnknownException,
+            UnsupportedAnalysisException,
+            CyclicPlanException
+    {
+        String[] plans = {
+            "reconfigure-gui-api/plan",
+            "restart-node-maven/plan",
+            "undeployment/plan",
+            "undeployment/refactored-plan"
+        };
+
+        for(String plan : plans){
+            String planPath = System.getProperty("user.dir").concat("/data/thinking-app/" + plan + ".json");
+
+            Analyzer cloning = new Analyzer();
+            boolean cloningVerdict = cloning.planAnalysis(
+                Parser.parseApplication(this.thinkingPath, this.thinkingGSPath),
+                Parser.parsePlan(planPath),
+                "--valid"
+            );
+
+            Analyzer trailing = new Analyzer();
+            trailing.setTrailMode(true);
+            Application thinking = Parser.parseApplication(this.thinkingPath, this.thinkingGSPath);
+            Application initialThinking = thinking.clone();
+            boolean trailingVerdict = trailing.planAnalysis(thinking, Parser.parsePlan(planPath), "--valid");
+
+            assertEquals(cloningVerdict, trailingVerdict);
+            if(!cloningVerdict){
+                assertEquals(cloning.getReport().getFailedAction(), trailing.getReport().getFailedAction());
+                assertEquals(cloning.getReport().getGlobalState(), trailing.getReport().getGlobalState());
+            }
+            //all the changes have been undone
+            assertTrue(thinking.equals(initialThinking));
+        }
+    }
+}
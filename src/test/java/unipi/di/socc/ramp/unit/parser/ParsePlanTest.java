@@ -0,0 +1,110 @@
+package unipi.di.socc.ramp.unit.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import unipi.di.socc.ramp.cli.parser.Parser;
+import unipi.di.socc.ramp.core.analyzer.Plan;
+import unipi.di.socc.ramp.core.analyzer.actions.Action;
+import unipi.di.socc.ramp.core.analyzer.actions.OpEnd;
+import unipi.di.socc.ramp.core.analyzer.actions.OpStart;
+import unipi.di.socc.ramp.core.analyzer.exceptions.CyclicPlanException;
+
+public class ParsePlanTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void transitiveClosureTest() throws IOException, CyclicPlanException {
+        String[] plans = {
+            "reconfigure-gui-api/plan",
+            "reconfigure-gui-api/refactored-plan",
+            "restart-node-maven/plan",
+            "restart-node-maven/refactored-plan",
+            "undeployment/plan",
+            "undeployment/refactored-plan"
+        };
+
+        for(String planName : plans){
+            Plan plan = Parser.parsePlan(System.getProperty("user.dir").concat("/data/thinking-app/" + planName + ".json"));
+
+            //the partial order is the closure of itself
+            Map<Action, List<Action>> closure = new HashMap<>();
+            for(Action before : plan.getPartialOrder().keySet())
+                closure.put(before, new ArrayList<>(plan.getPartialOrder().get(before)));
+            this.close(closure);
+
+            for(Action before : plan.getPartialOrder().keySet())
+                assertEquals(new HashSet<>(closure.get(before)), new HashSet<>(plan.getPartialOrder().get(before)));
+        }
+    }
+
+    @Test
+    public void cyclicPlanTest() throws IOException {
+        //a1.stop -> a2.stop -> a1.start -> a1.stop
+        Path planPath = this.tempDir.resolve("cyclic-plan.json");
+        Files.write(planPath, Arrays.asList(
+            "{",
+            "    \"actions\" : {",
+            "        \"stopA1\" : {\"action\" : \"op\", \"instanceID\" : \"a1\", \"opName\" : \"stop\"},",
+            "        \"stopA2\" : {\"action\" : \"op\", \"instanceID\" : \"a2\", \"opName\" : \"stop\"},",
+            "        \"startA1\" : {\"action\" : \"op\", \"instanceID\" : \"a1\", \"opName\" : \"start\"},",
+            "        \"startA2\" : {\"action\" : \"op\", \"instanceID\" : \"a2\", \"opName\" : \"start\"}",
+            "    },",
+            "    \"partialOrder\" : [",
+            "        {\"before\" : \"stopA1\", \"after\" : \"startA2\"},",
+            "        {\"before\" : \"stopA1\", \"after\" : \"stopA2\"},",
+            "        {\"before\" : \"stopA2\", \"after\" : \"startA1\"},",
+            "        {\"before\" : \"startA1\", \"after\" : \"stopA1\"}",
+            "    ]",
+            "}"
+        ));
+
+        CyclicPlanException e = assertThrows(CyclicPlanException.class, () -> Parser.parsePlan(planPath.toString()));
+
+        //each action of the cycle has to be executed before the next one
+        List<Action> cycle = e.getCycle();
+        assertEquals(6, cycle.size());
+        Map<Action, List<Action>> explicitOrder = new HashMap<>();
+        explicitOrder.put(new OpStart("a1", "stop"), Arrays.asList(new OpEnd("a1", "stop")));
+        explicitOrder.put(new OpEnd("a1", "stop"), Arrays.asList(new OpStart("a2", "start"), new OpStart("a2", "stop")));
+        explicitOrder.put(new OpStart("a2", "stop"), Arrays.asList(new OpEnd("a2", "stop")));
+        explicitOrder.put(new OpEnd("a2", "stop"), Arrays.asList(new OpStart("a1", "start")));
+        explicitOrder.put(new OpStart("a1", "start"), Arrays.asList(new OpEnd("a1", "start")));
+        explicitOrder.put(new OpEnd("a1", "start"), Arrays.asList(new OpStart("a1", "stop")));
+        for(int i = 0; i < cycle.size(); i++)
+            assertEquals(true, explicitOrder.get(cycle.get(i)).contains(cycle.get((i + 1) % cycle.size())));
+    }
+
+    //fixpoint closure: a -> b, b -> c => a -> c
+    private void close(Map<Action, List<Action>> order){
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(Action before : order.keySet()){
+                for(Action after : new ArrayList<>(order.get(before))){
+                    for(Action afterOfAfter : order.get(after)){
+                        if(!order.get(before).contains(afterOfAfter)){
+                            order.get(before).add(afterOfAfter);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}